@@ -0,0 +1,564 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+immutable compressed-sparse-row (CSR) representation of a directed checkpoint graph G = (V,E)
+the outgoing edges of vertex v are the edge indices offsets[v] .. offsets[v + 1] - 1, and for every edge index e
+destinations[e] is the head and cost_classes[e] a byte code into the per-graph tables class_weights and
+class_distances, so a relaxation reads an int and a byte instead of following LinkedList nodes and Edge objects;
+a railway graph only has a handful of distinct edge costs (switch and track); a graph that needs more than 256
+classes, disabled edges counting as classes of their own, falls back to an int weight and an int distance per edge,
+then cost_classes is null and the tables are indexed by edge
+memory: 4 * (|V| + 1) bytes of offsets and 5 bytes per edge, compared to roughly 36 bytes per vertex and 56 bytes
+per edge for LinkedList<Edge>[] on a 64-bit JVM with compressed oops (see linkedListFootprintBytes); 12 bytes per
+edge after the fallback
+an edge taken out of service keeps its weight stored as the bitwise complement, so the sign bit marks it disabled
+and re-enabling restores the original cost; edits are copy-on-write and share the unchanged arrays
+a graph and its transpose can be paired (see transposedPair), then each one's arrays are the other's reverse index
+ */
+public final class CompactGraph {
+    private final int totalVertices;
+    private final int[] offsets;
+    static final int MAX_COST_CLASSES = 256;
+    private final int[] destinations;
+    private final byte[] cost_classes;
+    private final int[] class_weights;
+    private final int[] class_distances;
+    private final Transpose transpose;
+    private volatile ReverseIndex reverse;
+    /*
+    encodes per-edge weights and distances into cost classes; with more than 256 distinct (weight, distance) pairs
+    the graph keeps the arrays weights and distances as its per-edge costs
+     */
+    CompactGraph(int totalVertices, int[] offsets, int[] destinations, int[] weights, int[] distances) {
+        this.totalVertices = totalVertices;
+        this.offsets = offsets;
+        this.destinations = destinations;
+        this.transpose = null;
+        byte[] codes_of_edges = new byte[destinations.length];
+        Map<Long, Integer> codes = new HashMap<>();
+        int[] table_weights = new int[MAX_COST_CLASSES];
+        int[] table_distances = new int[MAX_COST_CLASSES];
+        int last_code = -1;
+        for (int edge = 0; edge < destinations.length; edge++) {
+            if (last_code >= 0 && table_weights[last_code] == weights[edge] && table_distances[last_code] == distances[edge]) {
+                codes_of_edges[edge] = (byte) last_code;
+                continue;
+            }
+            Integer code = codes.get(((long) weights[edge] << 32) | (distances[edge] & 0xFFFFFFFFL));
+            if (code == null) {
+                code = codes.size();
+                if (code == MAX_COST_CLASSES) {
+                    this.cost_classes = null;
+                    this.class_weights = weights;
+                    this.class_distances = distances;
+                    return;
+                }
+                codes.put(((long) weights[edge] << 32) | (distances[edge] & 0xFFFFFFFFL), code);
+                table_weights[code] = weights[edge];
+                table_distances[code] = distances[edge];
+            }
+            codes_of_edges[edge] = (byte) (int) code;
+            last_code = code;
+        }
+        this.cost_classes = codes_of_edges;
+        this.class_weights = Arrays.copyOf(table_weights, codes.size());
+        this.class_distances = Arrays.copyOf(table_distances, codes.size());
+    }
+    /*
+    @param cost_classes byte[], cost class code of every edge, read as unsigned, null for per-edge costs
+    @param class_weights int[], weight of every cost class or of every edge if cost_classes is null, the bitwise
+           complement for disabled edges
+    @param class_distances int[], distance of every cost class or of every edge if cost_classes is null
+     */
+    CompactGraph(int totalVertices, int[] offsets, int[] destinations, byte[] cost_classes, int[] class_weights, int[] class_distances) {
+        this(totalVertices, offsets, destinations, cost_classes, class_weights, class_distances, null, null);
+    }
+
+    private CompactGraph(int totalVertices, int[] offsets, int[] destinations, byte[] cost_classes, int[] class_weights,
+                         int[] class_distances, Transpose transpose, ReverseIndex reverse) {
+        this.totalVertices = totalVertices;
+        this.offsets = offsets;
+        this.destinations = destinations;
+        this.cost_classes = cost_classes;
+        this.class_weights = class_weights;
+        this.class_distances = class_distances;
+        this.transpose = transpose;
+        this.reverse = reverse;
+    }
+
+    public int totalVertices() {
+        return totalVertices;
+    }
+
+    public int totalEdges() {
+        return destinations.length;
+    }
+    /*
+    @param vertex int, the vertex whose outgoing edges are requested
+    @return index of the first outgoing edge of vertex
+    @pre {@code vertex >= 0 && vertex < totalVertices}
+     */
+    public int firstEdge(int vertex) {
+        return offsets[vertex];
+    }
+    /*
+    @param vertex int, the vertex whose outgoing edges are requested
+    @return index one past the last outgoing edge of vertex
+    @pre {@code vertex >= 0 && vertex < totalVertices}
+     */
+    public int endEdge(int vertex) {
+        return offsets[vertex + 1];
+    }
+
+    public int destination(int edge) {
+        return destinations[edge];
+    }
+
+    public int weight(int edge) {
+        int weight = class_weights[costClass(edge)];
+        return weight ^ (weight >> 31);
+    }
+
+    public int distance(int edge) {
+        return class_distances[costClass(edge)];
+    }
+    /*
+    @return true if the edge is in service, searches skip disabled edges
+     */
+    public boolean isEnabled(int edge) {
+        return class_weights[costClass(edge)] >= 0;
+    }
+    /*
+    @return number of distinct edge costs, disabled edges count as a cost of their own; 0 if the graph stores its
+            costs per edge
+     */
+    public int totalCostClasses() {
+        return cost_classes == null ? 0 : class_weights.length;
+    }
+    /*
+    @return index of the cost of edge in the cost tables, edge itself if the graph stores its costs per edge
+     */
+    int costClass(int edge) {
+        byte[] codes = cost_classes;
+        return codes == null ? edge : codes[edge] & 0xFF;
+    }
+    /*
+    @param cost_class int, index into the cost tables, see costClass
+    @return the weight of the class, the bitwise complement for disabled edges
+     */
+    int classWeight(int cost_class) {
+        return class_weights[cost_class];
+    }
+
+    int classDistance(int cost_class) {
+        return class_distances[cost_class];
+    }
+    /*
+    @param vertex int, the vertex whose incoming edges are requested
+    @return first slot of the incoming edges of vertex, see incomingEdge and incomingSource
+    @pre {@code vertex >= 0 && vertex < totalVertices}
+     */
+    public int firstIncoming(int vertex) {
+        return reverseIndex().offsets[vertex];
+    }
+    /*
+    @return slot one past the last incoming edge of vertex
+     */
+    public int endIncoming(int vertex) {
+        return reverseIndex().offsets[vertex + 1];
+    }
+    /*
+    @param slot int, slot between firstIncoming(v) and endIncoming(v)
+    @return index of the incoming edge in the slot
+     */
+    public int incomingEdge(int slot) {
+        return reverseIndex().edges[slot];
+    }
+    /*
+    @param slot int, slot between firstIncoming(v) and endIncoming(v)
+    @return tail of the incoming edge in the slot
+     */
+    public int incomingSource(int slot) {
+        return reverseIndex().sources[slot];
+    }
+    /*
+    finds the first edge source -> destination
+    @param source int, tail of the edge
+    @param destination int, head of the edge
+    @return index of the edge, or -1 if there is no such edge
+     */
+    public int findEdge(int source, int destination) {
+        for (int edge = offsets[source]; edge < offsets[source + 1]; edge++) {
+            if (destinations[edge] == destination) {
+                return edge;
+            }
+        }
+        return -1;
+    }
+    /*
+    pads the graph with isolated vertices, the edge arrays are shared with this graph
+    @param totalVertices int, the new |V(G)|
+    @return a graph with totalVertices vertices and the same edges
+    @throws IllegalArgumentException if {@code totalVertices < totalVertices()}
+     */
+    public CompactGraph withTotalVertices(int totalVertices) throws IllegalArgumentException {
+        if (totalVertices < this.totalVertices) {
+            throw new IllegalArgumentException("cannot drop vertices from a graph");
+        }
+        int[] padded_offsets = Arrays.copyOf(offsets, totalVertices + 1);
+        Arrays.fill(padded_offsets, this.totalVertices + 1, totalVertices + 1, offsets[this.totalVertices]);
+        return new CompactGraph(totalVertices, padded_offsets, destinations, cost_classes, class_weights, class_distances);
+    }
+    /*
+    copy-on-write edit taking an edge out of service or back into it
+    only the cost class codes, or the per-edge costs, are copied; the topology and the reverse index are shared
+    @param edge int, index of the edge
+    @param enabled boolean, the new state of the edge
+    @return a graph in which only the state of edge differs, this graph if the edge already has that state
+    @throws IllegalArgumentException if {@code edge < 0 || edge >= totalEdges()}
+     */
+    public CompactGraph withEdgeEnabled(int edge, boolean enabled) throws IllegalArgumentException {
+        checkEdge(edge);
+        if (isEnabled(edge) == enabled) {
+            return this;
+        }
+        return withCostClass(edge, enabled ? weight(edge) : ~weight(edge), distance(edge));
+    }
+    /*
+    copy-on-write edit changing the cost of an edge, e.g. for a speed restriction; the edge keeps its state
+    @param edge int, index of the edge
+    @param weight int, the new weight of the edge
+    @param distance int, the new distance of the edge
+    @return a graph in which only the cost of edge differs
+    @throws IllegalArgumentException if {@code edge < 0 || edge >= totalEdges() || weight < 0 || distance < 0}
+     */
+    public CompactGraph withEdgeCost(int edge, int weight, int distance) throws IllegalArgumentException {
+        checkEdge(edge);
+        if (weight < 0 || distance < 0) {
+            throw new IllegalArgumentException("negative weight or distance for edge " + edge);
+        }
+        return withCostClass(edge, isEnabled(edge) ? weight : ~weight, distance);
+    }
+    /*
+    pairs a graph with its transpose, e.g. the rightwards and leftwards graphs of the same route rows
+    backward must hold the edges of forward reversed in the order a stable counting sort of forward's edges by head
+    produces, then forward's offsets and destinations are backward's reverse index and vice versa, and only the
+    permutation between the two edge orders is built when incoming edges are first needed
+    @return {forward, backward} sharing their topology, null if backward is not that transpose of forward
+     */
+    static CompactGraph[] transposedPair(CompactGraph forward, CompactGraph backward) {
+        if (forward.totalVertices != backward.totalVertices || forward.totalEdges() != backward.totalEdges()) {
+            return null;
+        }
+        int[] next = Arrays.copyOf(backward.offsets, forward.totalVertices);
+        for (int source = 0; source < forward.totalVertices; source++) {
+            for (int edge = forward.offsets[source]; edge < forward.offsets[source + 1]; edge++) {
+                int head = forward.destinations[edge];
+                int slot = next[head]++;
+                if (slot >= backward.offsets[head + 1] || backward.destinations[slot] != source) {
+                    return null;
+                }
+            }
+        }
+        return new CompactGraph[]{
+                new CompactGraph(forward.totalVertices, forward.offsets, forward.destinations, forward.cost_classes,
+                        forward.class_weights, forward.class_distances, new Transpose(backward.offsets, backward.destinations, true), null),
+                new CompactGraph(backward.totalVertices, backward.offsets, backward.destinations, backward.cost_classes,
+                        backward.class_weights, backward.class_distances, new Transpose(forward.offsets, forward.destinations, false), null)
+        };
+    }
+    /*
+    @return true if this graph shares its topology with its transpose
+     */
+    public boolean isTransposePaired() {
+        return transpose != null;
+    }
+    /*
+    @return true if this graph is paired with other as its transpose, see transposedPair
+     */
+    boolean isTransposeOf(CompactGraph other) {
+        return transpose != null && transpose.offsets == other.offsets && transpose.destinations == other.destinations;
+    }
+
+    /*
+    copy of this graph with edge in the cost class (class_weight, class_distance), the class is added to the tables
+    if it is new; a full table is first compacted to the classes still in use and, if that leaves no free class,
+    the copy stores its costs per edge
+     */
+    private CompactGraph withCostClass(int edge, int class_weight, int class_distance) {
+        if (cost_classes == null) {
+            return withPerEdgeCost(edge, class_weight, class_distance);
+        }
+        byte[] edited_classes = cost_classes.clone();
+        int[] edited_weights = class_weights;
+        int[] edited_distances = class_distances;
+        int code = 0;
+        while (code < edited_weights.length && (edited_weights[code] != class_weight || edited_distances[code] != class_distance)) {
+            code++;
+        }
+        if (code == MAX_COST_CLASSES) {
+            int[] used = new int[MAX_COST_CLASSES];
+            Arrays.fill(used, -1);
+            int used_classes = 0;
+            edited_weights = new int[MAX_COST_CLASSES];
+            edited_distances = new int[MAX_COST_CLASSES];
+            for (int i = 0; i < edited_classes.length; i++) {
+                if (i == edge) {
+                    continue;
+                }
+                int old_code = edited_classes[i] & 0xFF;
+                if (used[old_code] < 0) {
+                    used[old_code] = used_classes;
+                    edited_weights[used_classes] = class_weights[old_code];
+                    edited_distances[used_classes] = class_distances[old_code];
+                    used_classes++;
+                }
+                edited_classes[i] = (byte) used[old_code];
+            }
+            if (used_classes == MAX_COST_CLASSES) {
+                return withPerEdgeCost(edge, class_weight, class_distance);
+            }
+            edited_weights = Arrays.copyOf(edited_weights, used_classes);
+            edited_distances = Arrays.copyOf(edited_distances, used_classes);
+            code = used_classes;
+        }
+        if (code == edited_weights.length) {
+            edited_weights = Arrays.copyOf(edited_weights, code + 1);
+            edited_distances = Arrays.copyOf(edited_distances, code + 1);
+            edited_weights[code] = class_weight;
+            edited_distances[code] = class_distance;
+        }
+        edited_classes[edge] = (byte) code;
+        return new CompactGraph(totalVertices, offsets, destinations, edited_classes, edited_weights, edited_distances, transpose, reverse);
+    }
+    /*
+    copy of this graph storing an int weight and an int distance per edge, edge costing (edge_weight, edge_distance)
+     */
+    private CompactGraph withPerEdgeCost(int edge, int edge_weight, int edge_distance) {
+        int[] edge_weights = new int[destinations.length];
+        int[] edge_distances = new int[destinations.length];
+        for (int i = 0; i < destinations.length; i++) {
+            edge_weights[i] = class_weights[costClass(i)];
+            edge_distances[i] = class_distances[costClass(i)];
+        }
+        edge_weights[edge] = edge_weight;
+        edge_distances[edge] = edge_distance;
+        return new CompactGraph(totalVertices, offsets, destinations, null, edge_weights, edge_distances, transpose, reverse);
+    }
+    /*
+    @return approximate number of heap bytes held by the arrays of this graph
+     */
+    public long memoryFootprintBytes() {
+        ReverseIndex built = reverse;
+        long bytes = arrayBytes(offsets.length) + arrayBytes(destinations.length) + (cost_classes == null ? 0 : 16L + cost_classes.length)
+                + arrayBytes(class_weights.length) + arrayBytes(class_distances.length);
+        if (built != null) {
+            bytes += arrayBytes(built.edges.length);
+            if (transpose == null) {
+                bytes += arrayBytes(built.offsets.length) + arrayBytes(built.sources.length);
+            }
+        }
+        return bytes;
+    }
+    /*
+    estimates the heap bytes of the same graph with an int weight and an int distance per edge
+    @param totalVertices int, |V(G)|
+    @param totalEdges int, |E(G)|
+    @return approximate number of heap bytes
+     */
+    public static long intCostFootprintBytes(int totalVertices, int totalEdges) {
+        return arrayBytes(totalVertices + 1) + 3 * arrayBytes(totalEdges);
+    }
+    /*
+    estimates the heap bytes the same graph needs as LinkedList<Edge>[] adjacency lists
+    per vertex: 4 byte array slot + 32 byte LinkedList; per edge: 24 byte LinkedList.Node + 32 byte Edge
+    @param totalVertices int, |V(G)|
+    @param totalEdges int, |E(G)|
+    @return approximate number of heap bytes
+     */
+    public static long linkedListFootprintBytes(int totalVertices, int totalEdges) {
+        return 16L + 36L * totalVertices + 56L * totalEdges;
+    }
+
+    private static long arrayBytes(int length) {
+        return 16L + 4L * length;
+    }
+
+    private void checkEdge(int edge) throws IllegalArgumentException {
+        if (edge < 0 || edge >= destinations.length) {
+            throw new IllegalArgumentException("unknown edge " + edge);
+        }
+    }
+    /*
+    builds the incoming edge lists on first use, concurrent first calls may build it twice but agree on the result
+    a transpose-paired graph only builds the edge permutation and takes offsets and tails from its transpose
+     */
+    private ReverseIndex reverseIndex() {
+        ReverseIndex built = reverse;
+        if (built == null) {
+            built = transpose == null ? new ReverseIndex(totalVertices, offsets, destinations) : transposedIndex();
+            reverse = built;
+        }
+        return built;
+    }
+
+    private ReverseIndex transposedIndex() {
+        int[] forward_offsets = transpose.forward ? offsets : transpose.offsets;
+        int[] forward_destinations = transpose.forward ? destinations : transpose.destinations;
+        int[] next = Arrays.copyOf(transpose.forward ? transpose.offsets : offsets, totalVertices);
+        int[] edges = new int[destinations.length];
+        for (int source = 0; source < totalVertices; source++) {
+            for (int edge = forward_offsets[source]; edge < forward_offsets[source + 1]; edge++) {
+                int slot = next[forward_destinations[edge]]++;
+                if (transpose.forward) {
+                    edges[slot] = edge;
+                } else {
+                    edges[edge] = slot;
+                }
+            }
+        }
+        return new ReverseIndex(transpose.offsets, edges, transpose.destinations);
+    }
+    /*
+    topology of the transpose of a graph; forward is true for the graph the transpose was sorted from
+     */
+    private static final class Transpose {
+        final int[] offsets;
+        final int[] destinations;
+        final boolean forward;
+
+        Transpose(int[] offsets, int[] destinations, boolean forward) {
+            this.offsets = offsets;
+            this.destinations = destinations;
+            this.forward = forward;
+        }
+    }
+    /*
+    incoming edges grouped by head: slots offsets[v] .. offsets[v + 1] - 1 hold the edge index and the tail
+    of every edge pointing to v, it only depends on the topology and is shared by edited copies of the graph
+     */
+    private static final class ReverseIndex {
+        final int[] offsets;
+        final int[] edges;
+        final int[] sources;
+
+        ReverseIndex(int[] offsets, int[] edges, int[] sources) {
+            this.offsets = offsets;
+            this.edges = edges;
+            this.sources = sources;
+        }
+
+        ReverseIndex(int totalVertices, int[] forward_offsets, int[] destinations) {
+            offsets = new int[totalVertices + 1];
+            for (int destination : destinations) {
+                offsets[destination + 1]++;
+            }
+            for (int v = 0; v < totalVertices; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] next = Arrays.copyOf(offsets, totalVertices);
+            edges = new int[destinations.length];
+            sources = new int[destinations.length];
+            for (int source = 0; source < totalVertices; source++) {
+                for (int edge = forward_offsets[source]; edge < forward_offsets[source + 1]; edge++) {
+                    int slot = next[destinations[edge]]++;
+                    edges[slot] = edge;
+                    sources[slot] = source;
+                }
+            }
+        }
+    }
+    /*
+    collects edges in insertion order and freezes them into a CompactGraph
+    edges of the same source keep the order in which createEdge was called
+     */
+    public static final class Builder {
+        private int totalVertices;
+        private int totalEdges;
+        private int[] sources;
+        private int[] destinations;
+        private int[] weights;
+        private int[] distances;
+
+        public Builder(int totalVertices) {
+            this(totalVertices, 16);
+        }
+
+        public Builder(int totalVertices, int expectedEdges) {
+            if (totalVertices < 0 || expectedEdges < 0) {
+                throw new IllegalArgumentException("negative graph size");
+            }
+            this.totalVertices = totalVertices;
+            int capacity = Math.max(expectedEdges, 16);
+            sources = new int[capacity];
+            destinations = new int[capacity];
+            weights = new int[capacity];
+            distances = new int[capacity];
+        }
+        /*
+        grows |V(G)| so that vertex indices up to totalVertices - 1 are valid
+        @param totalVertices int, the minimal number of vertices
+         */
+        public Builder ensureVertices(int totalVertices) {
+            this.totalVertices = Math.max(this.totalVertices, totalVertices);
+            return this;
+        }
+        /*
+        adds the directed edge source -> destination
+        @throws IllegalArgumentException if {@code source < 0 || destination < 0 || weight < 0 || distance < 0}
+        @post {@code totalVertices > Math.max(source, destination)}
+         */
+        public Builder createEdge(int source, int destination, int weight, int distance) throws IllegalArgumentException {
+            if (source < 0 || destination < 0) {
+                throw new IllegalArgumentException("unknown checkpoint in edge " + source + " -> " + destination);
+            }
+            if (weight < 0 || distance < 0) {
+                throw new IllegalArgumentException("negative weight or distance in edge " + source + " -> " + destination);
+            }
+            if (totalEdges == sources.length) {
+                int capacity = sources.length + (sources.length >> 1);
+                sources = Arrays.copyOf(sources, capacity);
+                destinations = Arrays.copyOf(destinations, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+                distances = Arrays.copyOf(distances, capacity);
+            }
+            sources[totalEdges] = source;
+            destinations[totalEdges] = destination;
+            weights[totalEdges] = weight;
+            distances[totalEdges] = distance;
+            totalEdges++;
+            ensureVertices(Math.max(source, destination) + 1);
+            return this;
+        }
+
+        public int totalEdges() {
+            return totalEdges;
+        }
+        /*
+        sorts the collected edges by source with a stable counting sort
+        @return the immutable CompactGraph, the builder can still be used afterwards
+         */
+        public CompactGraph build() {
+            int[] offsets = new int[totalVertices + 1];
+            for (int i = 0; i < totalEdges; i++) {
+                offsets[sources[i] + 1]++;
+            }
+            for (int v = 0; v < totalVertices; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] next = Arrays.copyOf(offsets, totalVertices);
+            int[] sortedDestinations = new int[totalEdges];
+            int[] sortedWeights = new int[totalEdges];
+            int[] sortedDistances = new int[totalEdges];
+            for (int i = 0; i < totalEdges; i++) {
+                int slot = next[sources[i]]++;
+                sortedDestinations[slot] = destinations[i];
+                sortedWeights[slot] = weights[i];
+                sortedDistances[slot] = distances[i];
+            }
+            return new CompactGraph(totalVertices, offsets, sortedDestinations, sortedWeights, sortedDistances);
+        }
+    }
+}
@@ -0,0 +1,444 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+contraction hierarchy of one direction graph for fast point-to-point queries
+preprocessing contracts the vertices one by one in order of importance (edge difference plus contracted neighbours)
+and adds a shortcut u -> w whenever the path u -> v -> w through the contracted vertex v has no witness path of
+at most the same cost; a query then runs a bidirectional Dijkstra that only climbs to more important vertices
+costs are the DijkstraSearch keys (weight first, distance second), so a hierarchy query returns the same total
+weight, total distance and therefore the same arrival times as DijkstraSearch
+ */
+public final class ContractionHierarchy {
+    private static final int NO_EDGE = -1;
+    private static final int WITNESS_SETTLE_LIMIT = 256;
+    private static final ThreadLocal<SearchScratch[]> QUERY_SCRATCH =
+            ThreadLocal.withInitial(() -> new SearchScratch[]{new SearchScratch(), new SearchScratch()});
+    private final int totalVertices;
+    private final int[] edge_sources;
+    private final int[] edge_targets;
+    private final long[] edge_costs;
+    private final int[] edge_first_halves;
+    private final int[] edge_second_halves;
+    private final int[] upward_offsets;
+    private final int[] upward_edges;
+    private final int[] downward_offsets;
+    private final int[] downward_edges;
+
+    private ContractionHierarchy(int totalVertices, EdgeStore edges, int[] rank) {
+        this.totalVertices = totalVertices;
+        this.edge_sources = Arrays.copyOf(edges.sources, edges.size);
+        this.edge_targets = Arrays.copyOf(edges.targets, edges.size);
+        this.edge_costs = Arrays.copyOf(edges.costs, edges.size);
+        this.edge_first_halves = Arrays.copyOf(edges.first_halves, edges.size);
+        this.edge_second_halves = Arrays.copyOf(edges.second_halves, edges.size);
+        upward_offsets = new int[totalVertices + 1];
+        downward_offsets = new int[totalVertices + 1];
+        for (int edge = 0; edge < edges.size; edge++) {
+            if (rank[edge_sources[edge]] < rank[edge_targets[edge]]) {
+                upward_offsets[edge_sources[edge] + 1]++;
+            } else {
+                downward_offsets[edge_targets[edge] + 1]++;
+            }
+        }
+        for (int vertex = 0; vertex < totalVertices; vertex++) {
+            upward_offsets[vertex + 1] += upward_offsets[vertex];
+            downward_offsets[vertex + 1] += downward_offsets[vertex];
+        }
+        upward_edges = new int[upward_offsets[totalVertices]];
+        downward_edges = new int[downward_offsets[totalVertices]];
+        int[] next_upward = Arrays.copyOf(upward_offsets, totalVertices);
+        int[] next_downward = Arrays.copyOf(downward_offsets, totalVertices);
+        for (int edge = 0; edge < edges.size; edge++) {
+            if (rank[edge_sources[edge]] < rank[edge_targets[edge]]) {
+                upward_edges[next_upward[edge_sources[edge]]++] = edge;
+            } else {
+                downward_edges[next_downward[edge_targets[edge]]++] = edge;
+            }
+        }
+    }
+    /*
+    contracts every vertex of graph
+    @param graph CompactGraph, the direction graph to preprocess, it must not change afterwards
+    @return the hierarchy
+     */
+    public static ContractionHierarchy build(CompactGraph graph) {
+        return new Contraction(graph).contractAll();
+    }
+
+    public int totalShortcuts() {
+        int shortcuts = 0;
+        for (int first_half : edge_first_halves) {
+            if (first_half != NO_EDGE) {
+                shortcuts++;
+            }
+        }
+        return shortcuts;
+    }
+    /*
+    finds the shortest path with a bidirectional upward search and unpacks its shortcuts
+    @param source_checkpoint int, first checkpoint of the path
+    @param destination_checkpoint int, last checkpoint of the path
+    @return the path, RoutePath.NOT_FOUND if destination_checkpoint is unreachable
+     */
+    RoutePath query(int source_checkpoint, int destination_checkpoint) {
+        SearchScratch[] scratch = QUERY_SCRATCH.get();
+        SearchScratch forward = scratch[0];
+        SearchScratch backward = scratch[1];
+        forward.reset(totalVertices);
+        backward.reset(totalVertices);
+        forward.reach(source_checkpoint, 0, 0, NO_EDGE);
+        forward.heap.insertOrDecrease(source_checkpoint, 0);
+        backward.reach(destination_checkpoint, 0, 0, NO_EDGE);
+        backward.heap.insertOrDecrease(destination_checkpoint, 0);
+        long best = Long.MAX_VALUE;
+        int meeting_vertex = -1;
+        boolean forward_turn = true;
+        int settled = 0;
+        int relaxed = 0;
+        int heap_updates = 2;
+        while (true) {
+            boolean forward_open = !forward.heap.isEmpty() && forward.heap.minKey() < best;
+            boolean backward_open = !backward.heap.isEmpty() && backward.heap.minKey() < best;
+            if (!forward_open && !backward_open) {
+                break;
+            }
+            boolean run_forward = forward_open && (forward_turn || !backward_open);
+            forward_turn = !forward_turn;
+            SearchScratch current = run_forward ? forward : backward;
+            SearchScratch opposite = run_forward ? backward : forward;
+            int vertex = current.heap.poll();
+            current.settle(vertex);
+            settled++;
+            long vertex_cost = DijkstraSearch.key(current.weight(vertex), current.distance(vertex));
+            if (opposite.isReached(vertex)) {
+                long total = vertex_cost + DijkstraSearch.key(opposite.weight(vertex), opposite.distance(vertex));
+                if (total < best) {
+                    best = total;
+                    meeting_vertex = vertex;
+                }
+            }
+            int[] offsets = run_forward ? upward_offsets : downward_offsets;
+            int[] adjacency = run_forward ? upward_edges : downward_edges;
+            for (int i = offsets[vertex]; i < offsets[vertex + 1]; i++) {
+                int edge = adjacency[i];
+                int next_vertex = run_forward ? edge_targets[edge] : edge_sources[edge];
+                if (current.isSettled(next_vertex)) {
+                    continue;
+                }
+                long cost = vertex_cost + edge_costs[edge];
+                relaxed++;
+                if (!current.isReached(next_vertex) || cost < DijkstraSearch.key(current.weight(next_vertex), current.distance(next_vertex))) {
+                    current.reach(next_vertex, (int) (cost >>> 32), (int) cost, edge);
+                    current.heap.insertOrDecrease(next_vertex, cost);
+                    heap_updates++;
+                }
+            }
+        }
+        if (RoutingMetrics.isEnabled()) {
+            RoutingMetrics.recordSearch(settled, relaxed, heap_updates);
+        }
+        if (meeting_vertex < 0) {
+            return RoutePath.NOT_FOUND;
+        }
+        IncidentEdges path_edges = new IncidentEdges();
+        IncidentEdges pending = new IncidentEdges();
+        for (int vertex = meeting_vertex; forward.parent(vertex) != NO_EDGE; vertex = edge_sources[forward.parent(vertex)]) {
+            pending.add(forward.parent(vertex));
+        }
+        unpack(path_edges, pending);
+        for (int vertex = meeting_vertex; backward.parent(vertex) != NO_EDGE; vertex = edge_targets[backward.parent(vertex)]) {
+            pending.add(backward.parent(vertex));
+            unpack(path_edges, pending);
+        }
+        int path_size = path_edges.size;
+        int[] checkpoints = new int[path_size + 1];
+        int[] weights = new int[path_size + 1];
+        int[] distances = new int[path_size + 1];
+        checkpoints[0] = source_checkpoint;
+        for (int i = 0; i < path_size; i++) {
+            int edge = path_edges.edges[i];
+            checkpoints[i + 1] = edge_targets[edge];
+            weights[i + 1] = weights[i] + (int) (edge_costs[edge] >>> 32);
+            distances[i + 1] = distances[i] + (int) edge_costs[edge];
+        }
+        return RoutePath.of(checkpoints, weights, distances);
+    }
+    /*
+    pops the pending stack of edges and appends their original edges to path_edges, a shortcut is replaced by its
+    two halves; the forward half of the path is pushed from the meeting vertex back to the source, so it is
+    popped from the source onwards, and the backward half is unpacked edge by edge in path order
+    @modifies {@code path_edges}
+    @modifies {@code pending}
+    @post {@code pending.size == 0}
+     */
+    private void unpack(IncidentEdges path_edges, IncidentEdges pending) {
+        while (pending.size > 0) {
+            int top = pending.edges[--pending.size];
+            if (edge_first_halves[top] == NO_EDGE) {
+                path_edges.add(top);
+            } else {
+                pending.add(edge_second_halves[top]);
+                pending.add(edge_first_halves[top]);
+            }
+        }
+    }
+    /*
+    compares hierarchy queries with DijkstraSearch on random checkpoint pairs of graph
+    @param graph CompactGraph, the graph the hierarchy was built from
+    @param pairs int, number of random queries
+    @param seed long, seed of the random pairs
+    @return mismatching costs, differing but equally short paths and the time spent by both searches
+     */
+    public CrossCheck crossCheck(CompactGraph graph, int pairs, long seed) {
+        Random random = new Random(seed);
+        int cost_mismatches = 0;
+        int equal_cost_alternatives = 0;
+        long plain_nanos = 0;
+        long hierarchy_nanos = 0;
+        for (int i = 0; i < pairs; i++) {
+            int source_checkpoint = random.nextInt(totalVertices);
+            int destination_checkpoint = random.nextInt(totalVertices);
+            long start = System.nanoTime();
+            RoutePath plain = RoutePath.fromSearch(DijkstraSearch.search(graph, source_checkpoint, destination_checkpoint), destination_checkpoint);
+            long middle = System.nanoTime();
+            RoutePath shortcut = query(source_checkpoint, destination_checkpoint);
+            hierarchy_nanos += System.nanoTime() - middle;
+            plain_nanos += middle - start;
+            if (plain.isFound() != shortcut.isFound() || plain.isFound()
+                    && (plain.weight(plain.size() - 1) != shortcut.weight(shortcut.size() - 1)
+                    || plain.distance(plain.size() - 1) != shortcut.distance(shortcut.size() - 1))) {
+                cost_mismatches++;
+            } else if (!plain.sameCheckpoints(shortcut)) {
+                equal_cost_alternatives++;
+            }
+        }
+        return new CrossCheck(pairs, cost_mismatches, equal_cost_alternatives, plain_nanos, hierarchy_nanos);
+    }
+    /*
+    outcome of crossCheck
+     */
+    public static final class CrossCheck {
+        public final int pairs;
+        public final int cost_mismatches;
+        public final int equal_cost_alternatives;
+        public final long plain_nanos;
+        public final long hierarchy_nanos;
+
+        CrossCheck(int pairs, int cost_mismatches, int equal_cost_alternatives, long plain_nanos, long hierarchy_nanos) {
+            this.pairs = pairs;
+            this.cost_mismatches = cost_mismatches;
+            this.equal_cost_alternatives = equal_cost_alternatives;
+            this.plain_nanos = plain_nanos;
+            this.hierarchy_nanos = hierarchy_nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d pairs, %d cost mismatches, %d equal-cost alternative paths, plain %.1f us/query, hierarchy %.1f us/query",
+                    pairs, cost_mismatches, equal_cost_alternatives, plain_nanos / 1e3 / pairs, hierarchy_nanos / 1e3 / pairs);
+        }
+    }
+    /*
+    growable edge arrays of the graph under contraction; a shortcut remembers the two edges it replaces
+     */
+    private static final class EdgeStore {
+        int size;
+        int[] sources = new int[16];
+        int[] targets = new int[16];
+        long[] costs = new long[16];
+        int[] first_halves = new int[16];
+        int[] second_halves = new int[16];
+
+        int add(int source, int target, long cost, int first_half, int second_half) {
+            if (size == sources.length) {
+                int capacity = size * 2;
+                sources = Arrays.copyOf(sources, capacity);
+                targets = Arrays.copyOf(targets, capacity);
+                costs = Arrays.copyOf(costs, capacity);
+                first_halves = Arrays.copyOf(first_halves, capacity);
+                second_halves = Arrays.copyOf(second_halves, capacity);
+            }
+            sources[size] = source;
+            targets[size] = target;
+            costs[size] = cost;
+            first_halves[size] = first_half;
+            second_halves[size] = second_half;
+            return size++;
+        }
+    }
+    /*
+    growable list of edge ids, incident to one vertex or forming a path
+     */
+    private static final class IncidentEdges {
+        int size;
+        int[] edges = new int[4];
+
+        void add(int edge) {
+            if (size == edges.length) {
+                edges = Arrays.copyOf(edges, size * 2);
+            }
+            edges[size++] = edge;
+        }
+    }
+    /*
+    state of the preprocessing, discarded once the hierarchy is built
+     */
+    private static final class Contraction {
+        private final int totalVertices;
+        private final EdgeStore edges = new EdgeStore();
+        private final IncidentEdges[] outgoing;
+        private final IncidentEdges[] incoming;
+        private final boolean[] contracted;
+        private final int[] contracted_neighbours;
+        private final int[] rank;
+        private final SearchScratch witness = new SearchScratch();
+
+        Contraction(CompactGraph graph) {
+            totalVertices = graph.totalVertices();
+            outgoing = new IncidentEdges[totalVertices];
+            incoming = new IncidentEdges[totalVertices];
+            for (int vertex = 0; vertex < totalVertices; vertex++) {
+                outgoing[vertex] = new IncidentEdges();
+                incoming[vertex] = new IncidentEdges();
+            }
+            for (int vertex = 0; vertex < totalVertices; vertex++) {
+                for (int edge = graph.firstEdge(vertex); edge < graph.endEdge(vertex); edge++) {
+                    int target = graph.destination(edge);
+                    if (target != vertex && graph.isEnabled(edge)) {
+                        addEdge(vertex, target, DijkstraSearch.key(graph.weight(edge), graph.distance(edge)), NO_EDGE, NO_EDGE);
+                    }
+                }
+            }
+            contracted = new boolean[totalVertices];
+            contracted_neighbours = new int[totalVertices];
+            rank = new int[totalVertices];
+        }
+
+        ContractionHierarchy contractAll() {
+            IndexedMinHeap order = new IndexedMinHeap(totalVertices);
+            for (int vertex = 0; vertex < totalVertices; vertex++) {
+                order.insertOrDecrease(vertex, priority(vertex));
+            }
+            int next_rank = 0;
+            while (!order.isEmpty()) {
+                int vertex = order.poll();
+                long updated_priority = priority(vertex);
+                if (!order.isEmpty() && updated_priority > order.minKey()) {
+                    order.insertOrDecrease(vertex, updated_priority);
+                    continue;
+                }
+                contract(vertex, true);
+                contracted[vertex] = true;
+                rank[vertex] = next_rank++;
+                for (int i = 0; i < outgoing[vertex].size; i++) {
+                    contracted_neighbours[edges.targets[outgoing[vertex].edges[i]]]++;
+                }
+                for (int i = 0; i < incoming[vertex].size; i++) {
+                    contracted_neighbours[edges.sources[incoming[vertex].edges[i]]]++;
+                }
+            }
+            return new ContractionHierarchy(totalVertices, edges, rank);
+        }
+        /*
+        edge difference plus the number of already contracted neighbours, smaller values are contracted first
+         */
+        private long priority(int vertex) {
+            int removed = 0;
+            for (int i = 0; i < outgoing[vertex].size; i++) {
+                removed += contracted[edges.targets[outgoing[vertex].edges[i]]] ? 0 : 1;
+            }
+            for (int i = 0; i < incoming[vertex].size; i++) {
+                removed += contracted[edges.sources[incoming[vertex].edges[i]]] ? 0 : 1;
+            }
+            long shortcuts = contract(vertex, false);
+            return shortcuts - removed + contracted_neighbours[vertex];
+        }
+        /*
+        finds the shortcuts needed to contract vertex
+        @param add boolean, whether the shortcuts are inserted or only counted
+        @return number of shortcuts
+         */
+        private int contract(int vertex, boolean add) {
+            int shortcuts = 0;
+            for (int i = 0; i < incoming[vertex].size; i++) {
+                int in_edge = incoming[vertex].edges[i];
+                int source = edges.sources[in_edge];
+                if (contracted[source]) {
+                    continue;
+                }
+                long max_cost = 0;
+                for (int j = 0; j < outgoing[vertex].size; j++) {
+                    int out_edge = outgoing[vertex].edges[j];
+                    if (!contracted[edges.targets[out_edge]]) {
+                        max_cost = Math.max(max_cost, edges.costs[in_edge] + edges.costs[out_edge]);
+                    }
+                }
+                witnessSearch(source, vertex, max_cost);
+                for (int j = 0; j < outgoing[vertex].size; j++) {
+                    int out_edge = outgoing[vertex].edges[j];
+                    int target = edges.targets[out_edge];
+                    if (contracted[target] || target == source) {
+                        continue;
+                    }
+                    long cost = edges.costs[in_edge] + edges.costs[out_edge];
+                    if (witness.isReached(target) && DijkstraSearch.key(witness.weight(target), witness.distance(target)) <= cost) {
+                        continue;
+                    }
+                    shortcuts++;
+                    if (add) {
+                        addShortcut(source, target, cost, in_edge, out_edge);
+                    }
+                }
+            }
+            return shortcuts;
+        }
+        /*
+        bounded Dijkstra from source that avoids the vertex being contracted
+         */
+        private void witnessSearch(int source, int avoided_vertex, long max_cost) {
+            witness.reset(totalVertices);
+            witness.reach(source, 0, 0, NO_EDGE);
+            witness.heap.insertOrDecrease(source, 0);
+            int settled = 0;
+            while (!witness.heap.isEmpty() && witness.heap.minKey() <= max_cost && settled++ < WITNESS_SETTLE_LIMIT) {
+                int vertex = witness.heap.poll();
+                witness.settle(vertex);
+                long vertex_cost = DijkstraSearch.key(witness.weight(vertex), witness.distance(vertex));
+                for (int i = 0; i < outgoing[vertex].size; i++) {
+                    int edge = outgoing[vertex].edges[i];
+                    int target = edges.targets[edge];
+                    if (target == avoided_vertex || contracted[target] || witness.isSettled(target)) {
+                        continue;
+                    }
+                    long cost = vertex_cost + edges.costs[edge];
+                    if (!witness.isReached(target) || cost < DijkstraSearch.key(witness.weight(target), witness.distance(target))) {
+                        witness.reach(target, (int) (cost >>> 32), (int) cost, edge);
+                        witness.heap.insertOrDecrease(target, cost);
+                    }
+                }
+            }
+        }
+
+        private void addShortcut(int source, int target, long cost, int first_half, int second_half) {
+            for (int i = 0; i < outgoing[source].size; i++) {
+                int edge = outgoing[source].edges[i];
+                if (edges.targets[edge] == target && edges.first_halves[edge] != NO_EDGE) {
+                    if (cost < edges.costs[edge]) {
+                        edges.costs[edge] = cost;
+                        edges.first_halves[edge] = first_half;
+                        edges.second_halves[edge] = second_half;
+                    }
+                    return;
+                }
+            }
+            addEdge(source, target, cost, first_half, second_half);
+        }
+
+        private void addEdge(int source, int target, long cost, int first_half, int second_half) {
+            int edge = edges.add(source, target, cost, first_half, second_half);
+            outgoing[source].add(edge);
+            incoming[target].add(edge);
+        }
+    }
+}
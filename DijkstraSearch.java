@@ -0,0 +1,108 @@
+/*
+allocation-free Dijkstra search over a CompactGraph
+the search runs on a SearchScratch, normally the one of the calling thread, uses an indexed heap with decrease-key
+and stops as soon as the target checkpoint is settled; edges taken out of service are skipped
+equal total weights are ordered by the shorter total distance, so the arrival times of a query are deterministic
+the work of every run is reported to RoutingMetrics while it is enabled
+ */
+public final class DijkstraSearch {
+    public static final int NO_PARENT = -1;
+    public static final int NO_TARGET = -1;
+    static final long UNREACHABLE = Long.MAX_VALUE;
+
+    private DijkstraSearch() {
+    }
+    /*
+    combines a weight and a distance into one heap key ordered by weight first and distance second
+    @param weight int, total weight from the source
+    @param distance int, total distance from the source
+    @return the heap key
+     */
+    static long key(int weight, int distance) {
+        return ((long) weight << 32) | (distance & 0xFFFFFFFFL);
+    }
+    /*
+    runs the search on the scratch space of the calling thread
+    @param graph CompactGraph, the graph to search
+    @param source_checkpoint int, source vertex of the run
+    @param target_checkpoint int, vertex after whose settlement the run stops, NO_TARGET to settle every reachable vertex
+    @return the scratch space holding weights, distances and parents, valid until the thread's next search
+    @throws IllegalArgumentException if {@code source_checkpoint < 0 || source_checkpoint >= graph.totalVertices()}
+     */
+    static SearchScratch search(CompactGraph graph, int source_checkpoint, int target_checkpoint) throws IllegalArgumentException {
+        SearchScratch scratch = SearchScratch.forCurrentThread();
+        search(graph, source_checkpoint, target_checkpoint, scratch);
+        return scratch;
+    }
+    /*
+    runs the search on the given scratch space
+    @modifies {@code scratch}
+    @post {@code scratch.isSettled(target_checkpoint) || target_checkpoint is unreachable from source_checkpoint}
+     */
+    static void search(CompactGraph graph, int source_checkpoint, int target_checkpoint, SearchScratch scratch) throws IllegalArgumentException {
+        if (source_checkpoint < 0 || source_checkpoint >= graph.totalVertices()) {
+            throw new IllegalArgumentException("unknown source checkpoint " + source_checkpoint);
+        }
+        scratch.reset(graph.totalVertices());
+        scratch.reach(source_checkpoint, 0, 0, NO_PARENT);
+        scratch.heap.insertOrDecrease(source_checkpoint, key(0, 0));
+        resume(graph, target_checkpoint, scratch);
+    }
+    /*
+    runs the search from the vertices the caller has put into the heap of scratch after resetting it, e.g. with
+    initial weights other than 0 or with vertices excluded beforehand
+    @pre every vertex in {@code scratch.heap} is reached and keyed by key(scratch.weight(v), scratch.distance(v))
+    @modifies {@code scratch}
+     */
+    static void resume(CompactGraph graph, int target_checkpoint, SearchScratch scratch) {
+        resume(graph, target_checkpoint, scratch, null);
+    }
+    /*
+    runs the search as A* towards target_checkpoint: a vertex is keyed by its key from the source plus its potential
+    @param potentials long[], a consistent lower bound of the key from every vertex to target_checkpoint, such as
+           the exact keys of a backward search; UNREACHABLE for vertices that cannot reach it, which are never
+           entered; null to run plain Dijkstra
+    @pre every vertex v in {@code scratch.heap} is reached and keyed by key(scratch.weight(v), scratch.distance(v)) + potentials[v]
+    @modifies {@code scratch}
+     */
+    static void resume(CompactGraph graph, int target_checkpoint, SearchScratch scratch, long[] potentials) {
+        IndexedMinHeap heap = scratch.heap;
+        int settled = 0;
+        int relaxed = 0;
+        int heap_updates = heap.size();
+        while (!heap.isEmpty()) {
+            int extracted_vertex = heap.poll();
+            scratch.settle(extracted_vertex);
+            settled++;
+            if (extracted_vertex == target_checkpoint) {
+                break;
+            }
+            int extracted_weight = scratch.weight(extracted_vertex);
+            int extracted_distance = scratch.distance(extracted_vertex);
+            for (int edge = graph.firstEdge(extracted_vertex); edge < graph.endEdge(extracted_vertex); edge++) {
+                int adjacent_vertex = graph.destination(edge);
+                if (!graph.isEnabled(edge) || scratch.isSettled(adjacent_vertex)) {
+                    continue;
+                }
+                int weight = extracted_weight + graph.weight(edge);
+                int distance = extracted_distance + graph.distance(edge);
+                long key = key(weight, distance);
+                relaxed++;
+                if (!scratch.isReached(adjacent_vertex) || key < key(scratch.weight(adjacent_vertex), scratch.distance(adjacent_vertex))) {
+                    if (potentials != null) {
+                        if (potentials[adjacent_vertex] == UNREACHABLE) {
+                            continue;
+                        }
+                        key += potentials[adjacent_vertex];
+                    }
+                    scratch.reach(adjacent_vertex, weight, distance, extracted_vertex);
+                    heap.insertOrDecrease(adjacent_vertex, key);
+                    heap_updates++;
+                }
+            }
+        }
+        if (RoutingMetrics.isEnabled()) {
+            RoutingMetrics.recordSearch(settled, relaxed, heap_updates);
+        }
+    }
+}
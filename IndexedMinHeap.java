@@ -0,0 +1,134 @@
+import java.util.Arrays;
+
+/*
+primitive indexed 4-ary min-heap over the vertices 0 .. capacity - 1 with decrease-key
+every vertex is in the heap at most once, so there are no stale duplicate entries to skip and no boxing
+ */
+final class IndexedMinHeap {
+    private static final int ARITY = 4;
+    private static final int ABSENT = -1;
+    private int[] heap;
+    private long[] keys;
+    private int[] positions;
+    private int size;
+
+    IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        keys = new long[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, ABSENT);
+    }
+    /*
+    grows the heap so that vertices up to capacity - 1 can be inserted, vertices already in the heap are kept
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity > positions.length) {
+            int old_capacity = positions.length;
+            heap = Arrays.copyOf(heap, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            Arrays.fill(positions, old_capacity, capacity, ABSENT);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(int vertex) {
+        return positions[vertex] != ABSENT;
+    }
+    /*
+    removes every remaining vertex, in O(size) rather than O(capacity)
+    @post {@code isEmpty()}
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = ABSENT;
+        }
+        size = 0;
+    }
+    /*
+    inserts vertex with key, or lowers the key of vertex if it is already present
+    @param vertex int, the vertex to insert
+    @param key long, the priority of vertex
+    @post {@code contains(vertex) && keys[vertex] <= key}
+     */
+    void insertOrDecrease(int vertex, long key) {
+        int position = positions[vertex];
+        if (position == ABSENT) {
+            position = size++;
+        } else if (key >= keys[vertex]) {
+            return;
+        }
+        keys[vertex] = key;
+        siftUp(vertex, position);
+    }
+
+    long minKey() {
+        return keys[heap[0]];
+    }
+    /*
+    removes the vertex with the smallest key
+    @return the removed vertex
+    @pre {@code !isEmpty()}
+     */
+    int poll() {
+        int min = heap[0];
+        positions[min] = ABSENT;
+        int last = heap[--size];
+        if (size > 0) {
+            siftDown(last, 0);
+        }
+        return min;
+    }
+
+    private void siftUp(int vertex, int position) {
+        long key = keys[vertex];
+        while (position > 0) {
+            int parent = (position - 1) / ARITY;
+            int parent_vertex = heap[parent];
+            if (keys[parent_vertex] <= key) {
+                break;
+            }
+            heap[position] = parent_vertex;
+            positions[parent_vertex] = position;
+            position = parent;
+        }
+        heap[position] = vertex;
+        positions[vertex] = position;
+    }
+
+    private void siftDown(int vertex, int position) {
+        long key = keys[vertex];
+        while (true) {
+            int first_child = position * ARITY + 1;
+            if (first_child >= size) {
+                break;
+            }
+            int last_child = Math.min(first_child + ARITY, size);
+            int min_child = first_child;
+            long min_key = keys[heap[first_child]];
+            for (int child = first_child + 1; child < last_child; child++) {
+                long child_key = keys[heap[child]];
+                if (child_key < min_key) {
+                    min_child = child;
+                    min_key = child_key;
+                }
+            }
+            if (min_key >= key) {
+                break;
+            }
+            int child_vertex = heap[min_child];
+            heap[position] = child_vertex;
+            positions[child_vertex] = position;
+            position = min_child;
+        }
+        heap[position] = vertex;
+        positions[vertex] = position;
+    }
+}
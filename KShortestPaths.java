@@ -0,0 +1,303 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/*
+k shortest loopless paths between two checkpoints by Yen's algorithm with Lawler's refinement
+every accepted path is the parent of spur searches: for each checkpoint of the path from where it deviated from its
+own parent on, a Dijkstra search runs from that spur checkpoint to the destination with the root part of the path
+before it excluded, and with the edges out of the spur checkpoint that accepted paths with the same root already
+take banned; root plus spur path is a candidate and the cheapest candidate is accepted next
+one backward search from the destination gives every checkpoint the exact key of its shortest path there;
+excluding root checkpoints only makes paths longer, so these keys are a consistent A* potential and a spur search
+heads straight for the destination instead of settling everything closer to the spur than the destination is;
+once k - accepted candidates are known, a spur whose lower bound is no better than the worst of them is skipped
+the spur searches of one parent are independent and run on the workers of a pool when one is given; each search
+runs on the SearchScratch of its thread, where excluded checkpoints are stamped as settled, so a spur search costs
+no clearing and no allocation beyond the path it returns
+a query holds the potentials, 8 bytes per checkpoint, the accepted paths and at most k - accepted candidates,
+because no more of them can ever be accepted; the potentials are only kept if they fit into max_bytes and the
+spur searches fall back to plain Dijkstra otherwise; when the paths would need more than what is left the query
+stops early with the paths accepted so far, which are still the shortest ones; the scratch spaces, O(|V(G)|) per
+thread, are reused from query to query
+ */
+final class KShortestPaths {
+    public static final long DEFAULT_MAX_BYTES = 16L << 20;
+    private static final int POTENTIAL_BYTES_PER_CHECKPOINT = 8;
+
+    private KShortestPaths() {
+    }
+    /*
+    @param graph CompactGraph, the graph to search, disabled edges are never taken
+    @param source_checkpoint int, first checkpoint of every path
+    @param destination_checkpoint int, last checkpoint of every path
+    @param k int, maximal number of paths
+    @param max_bytes long, heap bytes the paths held by the query may take
+    @param pool ExecutorService, workers for the spur searches, null to search on the calling thread
+    @return at most k loopless paths ordered by total weight and then total distance, empty if the destination
+            cannot be reached; fewer than k if there are no more paths or the budget is exhausted
+    @throws IllegalArgumentException if {@code k < 1 || max_bytes <= 0} or a checkpoint is not a vertex of graph
+    @throws InterruptedException if the calling thread is interrupted while waiting for the spur searches
+     */
+    static List<RoutePath> find(CompactGraph graph, int source_checkpoint, int destination_checkpoint, int k, long max_bytes,
+                                ExecutorService pool) throws IllegalArgumentException, InterruptedException {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1");
+        }
+        if (max_bytes <= 0) {
+            throw new IllegalArgumentException("the memory budget must be positive");
+        }
+        if (destination_checkpoint < 0 || destination_checkpoint >= graph.totalVertices()) {
+            throw new IllegalArgumentException("unknown destination checkpoint " + destination_checkpoint);
+        }
+        List<RoutePath> accepted = new ArrayList<>(k);
+        RoutePath shortest = RoutePath.fromSearch(DijkstraSearch.search(graph, source_checkpoint, destination_checkpoint),
+                destination_checkpoint);
+        if (!shortest.isFound()) {
+            return accepted;
+        }
+        accepted.add(shortest);
+        if (k == 1) {
+            return accepted;
+        }
+        int[] deviations = new int[k];
+        List<RoutePath> candidates = new ArrayList<>(k);
+        List<Integer> candidate_deviations = new ArrayList<>(k);
+        long bytes = footprintBytes(shortest.size());
+        long[] potentials = null;
+        if (bytes + (long) POTENTIAL_BYTES_PER_CHECKPOINT * graph.totalVertices() <= max_bytes) {
+            potentials = potentials(graph, destination_checkpoint);
+            bytes += (long) POTENTIAL_BYTES_PER_CHECKPOINT * graph.totalVertices();
+        }
+        while (accepted.size() < k) {
+            RoutePath parent = accepted.get(accepted.size() - 1);
+            int first_spur = deviations[accepted.size() - 1];
+            int[][] banned = bannedNextCheckpoints(accepted, parent, first_spur);
+            int max_candidates = k - accepted.size();
+            RoutePath[] spurs = pool == null ? null
+                    : searchSpurs(graph, parent, first_spur, banned, potentials, bound(candidates, max_candidates), pool);
+            for (int i = first_spur; i < parent.size() - 1; i++) {
+                RoutePath spur = spurs != null ? spurs[i - first_spur]
+                        : searchSpur(graph, parent, i, banned[i - first_spur], potentials, bound(candidates, max_candidates));
+                if (!spur.isFound()) {
+                    continue;
+                }
+                int size = i + spur.size();
+                long key = DijkstraSearch.key(spur.weight(spur.size() - 1), spur.distance(spur.size() - 1));
+                int position = candidates.size();
+                while (position > 0 && key < pathKey(candidates.get(position - 1))) {
+                    position--;
+                }
+                if (position >= max_candidates || isCandidate(candidates, parent, i, spur)) {
+                    continue;
+                }
+                if (bytes + footprintBytes(size) > max_bytes) {
+                    return accepted;
+                }
+                candidates.add(position, join(parent, i, spur));
+                candidate_deviations.add(position, i);
+                bytes += footprintBytes(size);
+                while (candidates.size() > max_candidates) {
+                    bytes -= footprintBytes(candidates.remove(candidates.size() - 1).size());
+                    candidate_deviations.remove(candidate_deviations.size() - 1);
+                }
+            }
+            if (candidates.isEmpty()) {
+                break;
+            }
+            deviations[accepted.size()] = candidate_deviations.remove(0);
+            accepted.add(candidates.remove(0));
+        }
+        return accepted;
+    }
+    /*
+    @return for every spur index i from first_spur on, the checkpoints following position i on the accepted paths
+            whose first i + 1 checkpoints equal those of parent
+     */
+    private static int[][] bannedNextCheckpoints(List<RoutePath> accepted, RoutePath parent, int first_spur) {
+        int[][] banned = new int[parent.size() - 1 - first_spur][];
+        int[] counts = new int[banned.length];
+        int[] common_prefixes = new int[accepted.size()];
+        for (int p = 0; p < accepted.size(); p++) {
+            RoutePath path = accepted.get(p);
+            int common = 0;
+            while (common < path.size() && common < parent.size() && path.checkpoint(common) == parent.checkpoint(common)) {
+                common++;
+            }
+            common_prefixes[p] = common;
+            for (int i = first_spur; i < Math.min(common, path.size() - 1) && i < parent.size() - 1; i++) {
+                counts[i - first_spur]++;
+            }
+        }
+        for (int i = 0; i < banned.length; i++) {
+            banned[i] = new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (int p = 0; p < accepted.size(); p++) {
+            RoutePath path = accepted.get(p);
+            for (int i = first_spur; i < Math.min(common_prefixes[p], path.size() - 1) && i < parent.size() - 1; i++) {
+                banned[i - first_spur][counts[i - first_spur]++] = path.checkpoint(i + 1);
+            }
+        }
+        return banned;
+    }
+    /*
+    @return the key a new candidate must be below to be kept, UNREACHABLE while fewer than max_candidates are known
+     */
+    private static long bound(List<RoutePath> candidates, int max_candidates) {
+        return candidates.size() < max_candidates ? DijkstraSearch.UNREACHABLE : pathKey(candidates.get(candidates.size() - 1));
+    }
+    /*
+    searches the spurs of parent from first_spur on in parallel on the workers of pool
+    @return the spur path of every spur index, see searchSpur
+     */
+    private static RoutePath[] searchSpurs(CompactGraph graph, RoutePath parent, int first_spur, int[][] banned, long[] potentials,
+                                           long bound, ExecutorService pool) throws InterruptedException {
+        RoutePath[] spurs = new RoutePath[banned.length];
+        List<Callable<RoutePath>> tasks = new ArrayList<>(spurs.length);
+        for (int i = 0; i < spurs.length; i++) {
+            int spur_index = first_spur + i;
+            int[] banned_next = banned[i];
+            tasks.add(() -> searchSpur(graph, parent, spur_index, banned_next, potentials, bound));
+        }
+        List<Future<RoutePath>> futures = pool.invokeAll(tasks);
+        for (int i = 0; i < spurs.length; i++) {
+            try {
+                spurs[i] = futures.get(i).get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return spurs;
+    }
+
+    /*
+    searches the shortest path from the checkpoint at spur_index of parent to its destination that avoids the
+    checkpoints before spur_index and the banned next checkpoints
+    @param bound long, the key the path must be below, the search is skipped if the potentials prove it cannot be
+    @return the spur path with weights and distances counted from the source of parent, NOT_FOUND if there is none
+            below bound
+     */
+    private static RoutePath searchSpur(CompactGraph graph, RoutePath parent, int spur_index, int[] banned_next, long[] potentials,
+                                        long bound) {
+        SearchScratch scratch = SearchScratch.forCurrentThread();
+        scratch.reset(graph.totalVertices());
+        for (int i = 0; i < spur_index; i++) {
+            scratch.exclude(parent.checkpoint(i));
+        }
+        int spur_checkpoint = parent.checkpoint(spur_index);
+        int spur_weight = parent.weight(spur_index);
+        int spur_distance = parent.distance(spur_index);
+        scratch.reach(spur_checkpoint, spur_weight, spur_distance, DijkstraSearch.NO_PARENT);
+        scratch.settle(spur_checkpoint);
+        long lowest = DijkstraSearch.UNREACHABLE;
+        for (int edge = graph.firstEdge(spur_checkpoint); edge < graph.endEdge(spur_checkpoint); edge++) {
+            int adjacent_vertex = graph.destination(edge);
+            if (!graph.isEnabled(edge) || scratch.isSettled(adjacent_vertex) || contains(banned_next, adjacent_vertex)
+                    || (potentials != null && potentials[adjacent_vertex] == DijkstraSearch.UNREACHABLE)) {
+                continue;
+            }
+            int weight = spur_weight + graph.weight(edge);
+            int distance = spur_distance + graph.distance(edge);
+            long key = DijkstraSearch.key(weight, distance);
+            if (!scratch.isReached(adjacent_vertex) || key < DijkstraSearch.key(scratch.weight(adjacent_vertex), scratch.distance(adjacent_vertex))) {
+                scratch.reach(adjacent_vertex, weight, distance, spur_checkpoint);
+                scratch.heap.insertOrDecrease(adjacent_vertex, potentials == null ? key : key + potentials[adjacent_vertex]);
+                lowest = Math.min(lowest, potentials == null ? key : key + potentials[adjacent_vertex]);
+            }
+        }
+        if (lowest >= bound) {
+            return RoutePath.NOT_FOUND;
+        }
+        DijkstraSearch.resume(graph, parent.checkpoint(parent.size() - 1), scratch, potentials);
+        return RoutePath.fromSearch(scratch, parent.checkpoint(parent.size() - 1));
+    }
+    /*
+    backward Dijkstra from destination_checkpoint over the incoming edges
+    @return the key of the shortest path from every checkpoint to destination_checkpoint, UNREACHABLE if there is none
+     */
+    private static long[] potentials(CompactGraph graph, int destination_checkpoint) {
+        long[] potentials = new long[graph.totalVertices()];
+        Arrays.fill(potentials, DijkstraSearch.UNREACHABLE);
+        boolean[] settled = new boolean[graph.totalVertices()];
+        IndexedMinHeap heap = new IndexedMinHeap(graph.totalVertices());
+        potentials[destination_checkpoint] = 0;
+        heap.insertOrDecrease(destination_checkpoint, 0);
+        while (!heap.isEmpty()) {
+            int vertex = heap.poll();
+            settled[vertex] = true;
+            for (int slot = graph.firstIncoming(vertex); slot < graph.endIncoming(vertex); slot++) {
+                int edge = graph.incomingEdge(slot);
+                int source = graph.incomingSource(slot);
+                if (!graph.isEnabled(edge) || settled[source]) {
+                    continue;
+                }
+                long key = potentials[vertex] + DijkstraSearch.key(graph.weight(edge), graph.distance(edge));
+                if (key < potentials[source]) {
+                    potentials[source] = key;
+                    heap.insertOrDecrease(source, key);
+                }
+            }
+        }
+        return potentials;
+    }
+    /*
+    @return true if a candidate already consists of the root of parent up to spur_index followed by spur
+     */
+    private static boolean isCandidate(List<RoutePath> candidates, RoutePath parent, int spur_index, RoutePath spur) {
+        for (RoutePath candidate : candidates) {
+            if (candidate.size() != spur_index + spur.size()) {
+                continue;
+            }
+            boolean same = true;
+            for (int i = 0; same && i < candidate.size(); i++) {
+                same = candidate.checkpoint(i) == (i < spur_index ? parent.checkpoint(i) : spur.checkpoint(i - spur_index));
+            }
+            if (same) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static RoutePath join(RoutePath parent, int spur_index, RoutePath spur) {
+        int size = spur_index + spur.size();
+        int[] checkpoints = new int[size];
+        int[] weights = new int[size];
+        int[] distances = new int[size];
+        for (int i = 0; i < size; i++) {
+            RoutePath part = i < spur_index ? parent : spur;
+            int index = i < spur_index ? i : i - spur_index;
+            checkpoints[i] = part.checkpoint(index);
+            weights[i] = part.weight(index);
+            distances[i] = part.distance(index);
+        }
+        return RoutePath.of(checkpoints, weights, distances);
+    }
+
+    private static long pathKey(RoutePath path) {
+        return DijkstraSearch.key(path.weight(path.size() - 1), path.distance(path.size() - 1));
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+    /*
+    @return approximate heap bytes of a RoutePath of size checkpoints: the object and three int arrays
+     */
+    static long footprintBytes(int size) {
+        return 24 + 3 * (16 + 4L * size);
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+lock-free log-linear latency histogram in the style of HdrHistogram
+every power of two is split into SUB_BUCKETS linear sub-buckets, so a recorded value is kept with a relative error
+below 1 / SUB_BUCKETS over the whole range from one nanosecond to MAX_NANOS, in a fixed number of counters that
+concurrent threads increment without locking
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final long MAX_NANOS = (1L << 42) - 1;
+    private final AtomicLongArray counts = new AtomicLongArray(index(MAX_NANOS) + 1);
+    private final LongAdder total_count = new LongAdder();
+    private final LongAdder total_nanos = new LongAdder();
+    private final AtomicLong max_nanos = new AtomicLong();
+    /*
+    @param nanos long, the latency to record, clamped to 0 .. MAX_NANOS
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_NANOS));
+        counts.incrementAndGet(index(value));
+        total_count.increment();
+        total_nanos.add(value);
+        if (value > max_nanos.get()) {
+            max_nanos.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    public long count() {
+        return total_count.sum();
+    }
+
+    public long maxNanos() {
+        return max_nanos.get();
+    }
+
+    public double meanNanos() {
+        long count = count();
+        return count == 0 ? 0 : (double) total_nanos.sum() / count;
+    }
+    /*
+    @param percentile double, between 0 and 100
+    @return the highest value of the bucket holding the given percentile, 0 if nothing was recorded
+     */
+    public long percentileNanos(double percentile) {
+        long count = count();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValue(i), max_nanos.get());
+            }
+        }
+        return max_nanos.get();
+    }
+    /*
+    forgets every recorded value, values recorded concurrently may or may not survive
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        total_count.reset();
+        total_nanos.reset();
+        max_nanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus", count(), percentileNanos(50) / 1e3,
+                percentileNanos(99) / 1e3, percentileNanos(99.9) / 1e3, maxNanos() / 1e3);
+    }
+    /*
+    values below SUB_BUCKETS have a bucket each, a larger value with highest bit b goes to sub-bucket
+    (value >>> (b - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1) of power b
+     */
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long highestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = ((long) (SUB_BUCKETS + index % SUB_BUCKETS)) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,135 @@
+import java.util.Arrays;
+
+/*
+per-checkpoint index of the minutes at which a checkpoint is occupied by a scheduled train
+every checkpoint keeps its occupied intervals [start, end) sorted and disjoint in two parallel int arrays, so the
+interval around a minute is found by binary search and a reservation shifts at most the intervals after it;
+the arrays of a checkpoint are only allocated on its first reservation
+the gaps between occupied intervals are the safe intervals of the checkpoint: safe interval i runs from the end of
+occupied interval i - 1 (Integer.MIN_VALUE for i == 0) to the start of occupied interval i (Integer.MAX_VALUE for
+i == intervals(checkpoint)), a train may only be on the checkpoint within one of them
+minutes count from midnight of the day of the batch and may exceed TrainClock.MINUTES_PER_DAY
+ */
+public final class OccupancyIndex {
+    private static final int[] NONE = new int[0];
+    private final int[][] starts;
+    private final int[][] ends;
+    private final int[] counts;
+    private long total_intervals;
+    /*
+    @param totalVertices int, number of checkpoints, vertex ids are shared by both train directions
+     */
+    public OccupancyIndex(int totalVertices) {
+        starts = new int[totalVertices][];
+        ends = new int[totalVertices][];
+        counts = new int[totalVertices];
+        Arrays.fill(starts, NONE);
+        Arrays.fill(ends, NONE);
+    }
+
+    public int totalVertices() {
+        return counts.length;
+    }
+
+    public long totalIntervals() {
+        return total_intervals;
+    }
+    /*
+    @return number of occupied intervals of checkpoint
+     */
+    public int intervals(int checkpoint) {
+        return counts[checkpoint];
+    }
+
+    public int start(int checkpoint, int interval) {
+        return starts[checkpoint][interval];
+    }
+
+    public int end(int checkpoint, int interval) {
+        return ends[checkpoint][interval];
+    }
+    /*
+    @return first minute of safe interval i of checkpoint
+    @pre {@code 0 <= i && i <= intervals(checkpoint)}
+     */
+    int safeStart(int checkpoint, int i) {
+        return i == 0 ? Integer.MIN_VALUE : ends[checkpoint][i - 1];
+    }
+    /*
+    @return minute one past safe interval i of checkpoint
+    @pre {@code 0 <= i && i <= intervals(checkpoint)}
+     */
+    int safeEnd(int checkpoint, int i) {
+        return i == counts[checkpoint] ? Integer.MAX_VALUE : starts[checkpoint][i];
+    }
+    /*
+    @return index of the first safe interval of checkpoint that ends after minute, the one containing minute if
+            the checkpoint is free at minute
+     */
+    int firstSafeEndingAfter(int checkpoint, int minute) {
+        int[] checkpoint_starts = starts[checkpoint];
+        int low = 0;
+        int high = counts[checkpoint];
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (checkpoint_starts[middle] <= minute) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+    /*
+    @return true if no occupied interval of checkpoint overlaps [from, to)
+     */
+    public boolean isFree(int checkpoint, int from, int to) {
+        int i = firstSafeEndingAfter(checkpoint, from);
+        return safeStart(checkpoint, i) <= from && to <= safeEnd(checkpoint, i);
+    }
+    /*
+    occupies checkpoint during [from, to)
+    @throws IllegalArgumentException if {@code from >= to} or the checkpoint is already occupied within [from, to)
+    @post {@code !isFree(checkpoint, from, to)}
+     */
+    public void reserve(int checkpoint, int from, int to) throws IllegalArgumentException {
+        if (from >= to) {
+            throw new IllegalArgumentException("empty occupation " + from + " .. " + to);
+        }
+        int i = firstSafeEndingAfter(checkpoint, from);
+        if (safeStart(checkpoint, i) > from || to > safeEnd(checkpoint, i)) {
+            throw new IllegalArgumentException("checkpoint " + checkpoint + " is already occupied between " + from + " and " + to);
+        }
+        int count = counts[checkpoint];
+        if (count == starts[checkpoint].length) {
+            int capacity = Math.max(4, count + (count >> 1));
+            starts[checkpoint] = Arrays.copyOf(starts[checkpoint], capacity);
+            ends[checkpoint] = Arrays.copyOf(ends[checkpoint], capacity);
+        }
+        System.arraycopy(starts[checkpoint], i, starts[checkpoint], i + 1, count - i);
+        System.arraycopy(ends[checkpoint], i, ends[checkpoint], i + 1, count - i);
+        starts[checkpoint][i] = from;
+        ends[checkpoint][i] = to;
+        counts[checkpoint]++;
+        total_intervals++;
+    }
+    /*
+    frees every checkpoint, the allocated arrays are kept for the next batch
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+        total_intervals = 0;
+    }
+    /*
+    @return approximate number of heap bytes held by the index
+     */
+    public long memoryFootprintBytes() {
+        long bytes = 3 * (16L + 4L * counts.length);
+        for (int[] checkpoint_starts : starts) {
+            if (checkpoint_starts != NONE) {
+                bytes += 2 * (16L + 4L * checkpoint_starts.length);
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+read-only railway network: the checkpoint labels and one graph per train direction
+instances are immutable and can be shared by any number of query threads; every instance gets a new version
+number, so results cached for an earlier network can be recognised as stale
+closing, reopening or re-weighting an edge yields a new network that shares the labels and the unchanged graph
+ */
+public final class RailwayNetwork {
+    private static final AtomicLong NEXT_VERSION = new AtomicLong();
+    private final long version = NEXT_VERSION.incrementAndGet();
+    private final List<String> vertex_labels;
+    private final Map<String, Integer> vertex_ids;
+    private final CompactGraph graphForRightwardsTrains;
+    private final CompactGraph graphForLeftwardsTrains;
+    /*
+    @param vertex_labels List<String>, checkpoint name of every vertex id
+    @param graphForRightwardsTrains CompactGraph, graph routed by rightwards trains
+    @param graphForLeftwardsTrains CompactGraph, graph routed by leftwards trains
+    @throws IllegalArgumentException if a graph has more vertices than there are labels
+     */
+    public RailwayNetwork(List<String> vertex_labels, CompactGraph graphForRightwardsTrains, CompactGraph graphForLeftwardsTrains)
+            throws IllegalArgumentException {
+        if (graphForRightwardsTrains.totalVertices() > vertex_labels.size() || graphForLeftwardsTrains.totalVertices() > vertex_labels.size()) {
+            throw new IllegalArgumentException("graph has more vertices than checkpoint labels");
+        }
+        this.vertex_labels = Collections.unmodifiableList(new ArrayList<>(vertex_labels));
+        this.vertex_ids = new HashMap<>(vertex_labels.size() * 2);
+        for (int i = 0; i < vertex_labels.size(); i++) {
+            vertex_ids.put(vertex_labels.get(i), i);
+        }
+        this.graphForRightwardsTrains = graphForRightwardsTrains.totalVertices() == vertex_labels.size()
+                ? graphForRightwardsTrains : graphForRightwardsTrains.withTotalVertices(vertex_labels.size());
+        this.graphForLeftwardsTrains = graphForLeftwardsTrains.totalVertices() == vertex_labels.size()
+                ? graphForLeftwardsTrains : graphForLeftwardsTrains.withTotalVertices(vertex_labels.size());
+    }
+
+    private RailwayNetwork(RailwayNetwork previous, CompactGraph graphForRightwardsTrains, CompactGraph graphForLeftwardsTrains) {
+        this.vertex_labels = previous.vertex_labels;
+        this.vertex_ids = previous.vertex_ids;
+        this.graphForRightwardsTrains = graphForRightwardsTrains;
+        this.graphForLeftwardsTrains = graphForLeftwardsTrains;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public int totalVertices() {
+        return vertex_labels.size();
+    }
+
+    public List<String> vertexLabels() {
+        return vertex_labels;
+    }
+
+    public String label(int checkpoint) {
+        return vertex_labels.get(checkpoint);
+    }
+    /*
+    @param label String, checkpoint name such as TC101 or M12
+    @return vertex id of the checkpoint, -1 if there is no such checkpoint
+     */
+    public int checkpointId(String label) {
+        Integer id = vertex_ids.get(label);
+        return id == null ? -1 : id;
+    }
+
+    /*
+    @return approximate number of heap bytes held by the graphs of both directions, topology shared by transposed
+            graphs is counted once
+     */
+    public long memoryFootprintBytes() {
+        return graphForRightwardsTrains.memoryFootprintBytes() + graphForLeftwardsTrains.memoryFootprintBytes();
+    }
+
+    public CompactGraph graph(TrainDirection direction) {
+        return direction == TrainDirection.RIGHT ? graphForRightwardsTrains : graphForLeftwardsTrains;
+    }
+    /*
+    @param direction TrainDirection, graph of the edge
+    @param source int, tail of the edge
+    @param destination int, head of the edge
+    @return index of the first edge source -> destination in graph(direction)
+    @throws IllegalArgumentException if there is no such edge
+     */
+    public int edge(TrainDirection direction, int source, int destination) throws IllegalArgumentException {
+        if (source < 0 || source >= totalVertices() || destination < 0 || destination >= totalVertices()) {
+            throw new IllegalArgumentException("unknown checkpoint in edge " + source + " -> " + destination);
+        }
+        int edge = graph(direction).findEdge(source, destination);
+        if (edge < 0) {
+            throw new IllegalArgumentException("There is no edge " + label(source) + " -> " + label(destination));
+        }
+        return edge;
+    }
+    /*
+    takes an edge out of service, e.g. when its switch or track circuit fails, or puts it back into service
+    @param enabled boolean, the new state of the edge
+    @return the network with the edge in that state
+    @throws IllegalArgumentException if there is no edge source -> destination in graph(direction)
+     */
+    public RailwayNetwork withEdgeEnabled(TrainDirection direction, int source, int destination, boolean enabled)
+            throws IllegalArgumentException {
+        return withGraph(direction, graph(direction).withEdgeEnabled(edge(direction, source, destination), enabled));
+    }
+    /*
+    changes the cost of an edge, e.g. for a speed restriction on the segment
+    @return the network with the new edge cost
+    @throws IllegalArgumentException if there is no edge source -> destination in graph(direction) or
+            {@code weight < 0 || distance < 0}
+     */
+    public RailwayNetwork withEdgeCost(TrainDirection direction, int source, int destination, int weight, int distance)
+            throws IllegalArgumentException {
+        return withGraph(direction, graph(direction).withEdgeCost(edge(direction, source, destination), weight, distance));
+    }
+
+    private RailwayNetwork withGraph(TrainDirection direction, CompactGraph graph) {
+        return direction == TrainDirection.RIGHT
+                ? new RailwayNetwork(this, graph, graphForLeftwardsTrains)
+                : new RailwayNetwork(this, graphForRightwardsTrains, graph);
+    }
+}
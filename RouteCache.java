@@ -0,0 +1,194 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+bounded cache of shortest path trees keyed on network version, direction and source checkpoint
+a tree answers every destination of its source and does not depend on the departure time, so repeated
+(direction, source, destination) questions are answered from the cached tree in O(path length)
+entries are evicted least recently used once more than max_trees are cached, and an entry only matches the
+network version it was computed on, so rebuilding the network invalidates it; changing a single edge instead
+repairs the affected trees and carries them over to the new version
+ */
+public final class RouteCache {
+    private final int max_trees;
+    private final LinkedHashMap<Key, ShortestPathTree> trees;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder repairs = new LongAdder();
+    /*
+    @param max_trees int, maximal number of cached trees, each holds three int arrays of |V(G)|
+    @throws IllegalArgumentException if {@code max_trees < 1}
+     */
+    public RouteCache(int max_trees) throws IllegalArgumentException {
+        if (max_trees < 1) {
+            throw new IllegalArgumentException("cache needs room for at least one tree");
+        }
+        this.max_trees = max_trees;
+        this.trees = new LinkedHashMap<Key, ShortestPathTree>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, ShortestPathTree> eldest) {
+                if (size() > RouteCache.this.max_trees) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    /*
+    returns the cached tree of source_checkpoint or computes and caches it
+    the search runs outside the lock, so concurrent misses on different keys do not wait for each other
+    @param network RailwayNetwork, the current network
+    @param direction TrainDirection, graph of the tree
+    @param source_checkpoint int, root of the tree
+    @return the shortest path tree
+     */
+    ShortestPathTree tree(RailwayNetwork network, TrainDirection direction, int source_checkpoint) {
+        Key key = new Key(network.version(), direction, source_checkpoint);
+        synchronized (trees) {
+            ShortestPathTree tree = trees.get(key);
+            if (tree != null) {
+                hits.increment();
+                return tree;
+            }
+        }
+        misses.increment();
+        ShortestPathTree tree = ShortestPathTree.compute(network.graph(direction), source_checkpoint);
+        synchronized (trees) {
+            trees.put(key, tree);
+        }
+        return tree;
+    }
+    /*
+    drops every tree that was not computed on current
+    @param current RailwayNetwork, the network that replaces the cached ones
+     */
+    void invalidate(RailwayNetwork current) {
+        synchronized (trees) {
+            for (Iterator<Key> keys = trees.keySet().iterator(); keys.hasNext(); ) {
+                if (keys.next().version != current.version()) {
+                    keys.remove();
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+    /*
+    carries the trees of previous over to updated, which differs from previous in one edge of one direction
+    trees of that direction are repaired outside the lock, trees of the other direction are kept as they are, and
+    trees of any other network version are dropped
+    @param previous RailwayNetwork, the network the trees were computed on
+    @param updated RailwayNetwork, the network after the edge change
+    @param direction TrainDirection, graph of the changed edge
+    @param tail int, tail of the changed edge
+    @param edge int, index of the changed edge in updated.graph(direction)
+     */
+    void repair(RailwayNetwork previous, RailwayNetwork updated, TrainDirection direction, int tail, int edge) {
+        List<Key> keys = new ArrayList<>();
+        List<ShortestPathTree> carried = new ArrayList<>();
+        synchronized (trees) {
+            for (Iterator<Map.Entry<Key, ShortestPathTree>> entries = trees.entrySet().iterator(); entries.hasNext(); ) {
+                Map.Entry<Key, ShortestPathTree> entry = entries.next();
+                if (entry.getKey().version == previous.version()) {
+                    keys.add(entry.getKey());
+                    carried.add(entry.getValue());
+                }
+                entries.remove();
+                if (entry.getKey().version != previous.version()) {
+                    invalidations.increment();
+                }
+            }
+        }
+        CompactGraph previous_graph = previous.graph(direction);
+        CompactGraph updated_graph = updated.graph(direction);
+        for (int i = 0; i < keys.size(); i++) {
+            if (keys.get(i).direction == direction) {
+                carried.set(i, carried.get(i).repair(previous_graph, updated_graph, tail, edge));
+                repairs.increment();
+            }
+        }
+        synchronized (trees) {
+            for (int i = 0; i < keys.size(); i++) {
+                Key key = keys.get(i);
+                trees.putIfAbsent(new Key(updated.version(), key.direction, key.source_checkpoint), carried.get(i));
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (trees) {
+            return trees.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (trees) {
+            invalidations.add(trees.size());
+            trees.clear();
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public long invalidations() {
+        return invalidations.sum();
+    }
+
+    public long repairs() {
+        return repairs.sum();
+    }
+
+    public double hitRate() {
+        long lookups = hits() + misses();
+        return lookups == 0 ? 0 : (double) hits() / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d trees, %d hits, %d misses (%.1f%% hit rate), %d evictions, %d invalidations, %d repairs",
+                size(), hits(), misses(), 100 * hitRate(), evictions(), invalidations(), repairs());
+    }
+
+    private static final class Key {
+        final long version;
+        final TrainDirection direction;
+        final int source_checkpoint;
+
+        Key(long version, TrainDirection direction, int source_checkpoint) {
+            this.version = version;
+            this.direction = direction;
+            this.source_checkpoint = source_checkpoint;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return version == key.version && direction == key.direction && source_checkpoint == key.source_checkpoint;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(version, direction, source_checkpoint);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/*
+builds the RailwayNetwork from the route table in one streamed pass
+every row source -> destination is read once; checkpoint names are interned into vertex ids through a HashMap
+and the type of a checkpoint (switch or track) is resolved once per label into a byte class code, so loading is
+O(|E|) instead of one vertex_labels.indexOf per endpoint and three full-table queries
+the rows are stored once: the rightwards graph is the rows sorted by source and the leftwards graph its transpose,
+paired with CompactGraph.transposedPair so that both directions share one topology; an edge costs what the
+checkpoint it runs into costs, which is the destination for rightwards and the source for leftwards trains
+rows into checkpoints that are neither switches nor tracks only exist in one direction, a network with such rows
+gets two unpaired graphs
+ */
+public final class RouteGraphLoader {
+    static final String ROUTE_QUERY = "SELECT source, destination FROM \"*****\" ";
+    static final int FETCH_SIZE = 10_000;
+    static final byte SWITCH = 0;
+    static final byte TRACK = 1;
+    static final byte OTHER = 2;
+    private static final int[] CLASS_WEIGHTS = {DijkstraTrainAlgorithmPQ.SWITCH_WEIGHT, DijkstraTrainAlgorithmPQ.TRACK_WEIGHT};
+    private static final int[] CLASS_DISTANCES = {DijkstraTrainAlgorithmPQ.SWITCH_DISTANCE, DijkstraTrainAlgorithmPQ.TRACK_DISTANCE};
+    private final List<String> vertex_labels = new ArrayList<>();
+    private final Map<String, Integer> vertex_ids = new HashMap<>();
+    private byte[] vertex_classes = new byte[1 << 12];
+    private int[] route_sources = new int[1 << 12];
+    private int[] route_destinations = new int[1 << 12];
+    private int routes;
+    /*
+    loads the network from the route table of the ROUTE database
+    @param connection Connection, open connection to the database, it is not closed
+    @return the loaded network
+    @throws SQLException if the route table cannot be read
+     */
+    public static RailwayNetwork load(Connection connection) throws SQLException {
+        return load(connection, ROUTE_QUERY);
+    }
+    /*
+    loads the network from any query returning source and destination columns
+    the statement is forward-only and read-only with a fetch size, and auto-commit is switched off while reading,
+    so drivers such as PostgreSQL stream the rows through a cursor instead of materialising the whole table
+    @param connection Connection, open connection to the database, it is not closed
+    @param query String, SQL returning one row per directed connection with columns source and destination
+    @return the loaded network
+    @throws SQLException if the query fails
+     */
+    public static RailwayNetwork load(Connection connection, String query) throws SQLException {
+        RouteGraphLoader loader = new RouteGraphLoader();
+        scan(connection, query, loader::addRoute);
+        return loader.build();
+    }
+    /*
+    fingerprints the route table of the ROUTE database
+    @param connection Connection, open connection to the database, it is not closed
+    @return fingerprint of the rows, see fingerprint(Connection, String)
+    @throws SQLException if the route table cannot be read
+     */
+    public static long fingerprint(Connection connection) throws SQLException {
+        return fingerprint(connection, ROUTE_QUERY);
+    }
+    /*
+    fingerprints the rows of a query returning source and destination columns, so a GraphSnapshot can tell whether
+    it was built from the rows as they are now; the rows are streamed once as by load but nothing is interned, sorted
+    or built, and their order does not matter, since the table has no key to order them by
+    @param connection Connection, open connection to the database, it is not closed
+    @param query String, SQL returning one row per directed connection with columns source and destination
+    @return a 64-bit hash of the row count and the multiset of (source, destination) rows
+    @throws SQLException if the query fails
+     */
+    public static long fingerprint(Connection connection, String query) throws SQLException {
+        long[] rows_and_sum = new long[2];
+        scan(connection, query, (source, destination) -> {
+            rows_and_sum[0]++;
+            rows_and_sum[1] += mix((long) Objects.hashCode(source) << 32 | (Objects.hashCode(destination) & 0xFFFFFFFFL));
+        });
+        return mix(rows_and_sum[1] + mix(rows_and_sum[0]));
+    }
+
+    private interface RouteRow {
+        void accept(String source, String destination);
+    }
+    /*
+    streams the source and destination of every row of query into row
+     */
+    private static void scan(Connection connection, String query, RouteRow row) throws SQLException {
+        boolean auto_commit = connection.getAutoCommit();
+        if (auto_commit) {
+            connection.setAutoCommit(false);
+        }
+        try (PreparedStatement statement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(FETCH_SIZE);
+            try (ResultSet route_rows = statement.executeQuery()) {
+                int source_column = route_rows.findColumn("source");
+                int destination_column = route_rows.findColumn("destination");
+                while (route_rows.next()) {
+                    row.accept(route_rows.getString(source_column), route_rows.getString(destination_column));
+                }
+            }
+        } finally {
+            if (auto_commit) {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+    /*
+    SplitMix64 finalizer, spreads every input bit over the whole hash
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+    /*
+    adds the connection source -> destination, rightwards trains run source -> destination and leftwards trains
+    destination -> source
+    @param source String, label of the checkpoint the connection starts at
+    @param destination String, label of the checkpoint the connection ends at
+    @modifies {@code vertex_labels}
+    @modifies {@code route_sources}
+    @modifies {@code route_destinations}
+     */
+    void addRoute(String source, String destination) {
+        int source_checkpoint = intern(source);
+        int destination_checkpoint = intern(destination);
+        if (routes == route_sources.length) {
+            route_sources = Arrays.copyOf(route_sources, routes << 1);
+            route_destinations = Arrays.copyOf(route_destinations, routes << 1);
+        }
+        route_sources[routes] = source_checkpoint;
+        route_destinations[routes] = destination_checkpoint;
+        routes++;
+    }
+    /*
+    sorts the rows into the rightwards graph and transposes it into the leftwards graph
+    @return the network of every row added so far
+     */
+    RailwayNetwork build() {
+        int totalVertices = vertex_labels.size();
+        int[] by_source = sortRows(totalVertices, route_sources, null);
+        CompactGraph graphForRightwardsTrains = directionGraph(totalVertices, by_source, route_sources, route_destinations);
+        CompactGraph graphForLeftwardsTrains = directionGraph(totalVertices, sortRows(totalVertices, route_destinations, by_source),
+                route_destinations, route_sources);
+        CompactGraph[] paired = CompactGraph.transposedPair(graphForRightwardsTrains, graphForLeftwardsTrains);
+        if (paired != null) {
+            graphForRightwardsTrains = paired[0];
+            graphForLeftwardsTrains = paired[1];
+        }
+        return new RailwayNetwork(vertex_labels, graphForRightwardsTrains, graphForLeftwardsTrains);
+    }
+    /*
+    @param label String, checkpoint name
+    @return SWITCH for M..., TRACK for TC... and OTHER for any other checkpoint
+     */
+    static byte classify(String label) {
+        if (label.startsWith("M")) {
+            return SWITCH;
+        }
+        return label.startsWith("TC") ? TRACK : OTHER;
+    }
+    /*
+    stable counting sort of row ids by checkpoint
+    @param keys int[], the checkpoint every row is sorted by
+    @param sequence int[], row ids in the order to keep among equal keys, null for the order the rows were added
+    @return the row ids sorted by keys[row]
+     */
+    private int[] sortRows(int totalVertices, int[] keys, int[] sequence) {
+        int[] next = new int[totalVertices + 1];
+        for (int row = 0; row < routes; row++) {
+            next[keys[row] + 1]++;
+        }
+        for (int v = 0; v < totalVertices; v++) {
+            next[v + 1] += next[v];
+        }
+        int[] sorted = new int[routes];
+        for (int i = 0; i < routes; i++) {
+            int row = sequence == null ? i : sequence[i];
+            sorted[next[keys[row]]++] = row;
+        }
+        return sorted;
+    }
+    /*
+    CSR graph of the rows tails[row] -> heads[row], costed by the class of the head
+    @param ordered_rows int[], row ids sorted by tails[row]
+     */
+    private CompactGraph directionGraph(int totalVertices, int[] ordered_rows, int[] tails, int[] heads) {
+        int[] offsets = new int[totalVertices + 1];
+        int totalEdges = 0;
+        for (int row : ordered_rows) {
+            if (vertex_classes[heads[row]] != OTHER) {
+                offsets[tails[row] + 1]++;
+                totalEdges++;
+            }
+        }
+        for (int v = 0; v < totalVertices; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] destinations = new int[totalEdges];
+        byte[] cost_classes = new byte[totalEdges];
+        int edge = 0;
+        for (int row : ordered_rows) {
+            byte head_class = vertex_classes[heads[row]];
+            if (head_class != OTHER) {
+                destinations[edge] = heads[row];
+                cost_classes[edge] = head_class;
+                edge++;
+            }
+        }
+        return new CompactGraph(totalVertices, offsets, destinations, cost_classes, CLASS_WEIGHTS, CLASS_DISTANCES);
+    }
+
+    private int intern(String label) {
+        Integer id = vertex_ids.get(label);
+        if (id == null) {
+            id = vertex_labels.size();
+            vertex_ids.put(label, id);
+            vertex_labels.add(label);
+            if (id == vertex_classes.length) {
+                vertex_classes = Arrays.copyOf(vertex_classes, id << 1);
+            }
+            vertex_classes[id] = classify(label);
+        }
+        return id;
+    }
+}
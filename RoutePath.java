@@ -0,0 +1,81 @@
+import java.util.Arrays;
+
+/*
+shortest path between two checkpoints that does not depend on the departure time
+for every checkpoint on the path it keeps the total weight and the total distance from the first checkpoint,
+so arrival times can be derived for any departure time
+ */
+final class RoutePath {
+    static final RoutePath NOT_FOUND = new RoutePath(new int[0], new int[0], new int[0]);
+    private final int[] checkpoints;
+    private final int[] weights;
+    private final int[] distances;
+
+    private RoutePath(int[] checkpoints, int[] weights, int[] distances) {
+        this.checkpoints = checkpoints;
+        this.weights = weights;
+        this.distances = distances;
+    }
+    static RoutePath of(int[] checkpoints, int[] weights, int[] distances) {
+        return checkpoints.length == 0 ? NOT_FOUND : new RoutePath(checkpoints, weights, distances);
+    }
+    /*
+    walks the parent pointers of a finished search back from the destination
+    @param scratch SearchScratch, the scratch space of a search started at source_checkpoint
+    @param destination_checkpoint int, last checkpoint of the path
+    @return the path, NOT_FOUND if destination_checkpoint was not settled
+     */
+    static RoutePath fromSearch(SearchScratch scratch, int destination_checkpoint) {
+        if (!scratch.isSettled(destination_checkpoint)) {
+            return NOT_FOUND;
+        }
+        int length = 0;
+        for (int vertex = destination_checkpoint; vertex != DijkstraSearch.NO_PARENT; vertex = scratch.parent(vertex)) {
+            length++;
+        }
+        int[] checkpoints = new int[length];
+        int[] weights = new int[length];
+        int[] distances = new int[length];
+        for (int vertex = destination_checkpoint, i = length - 1; vertex != DijkstraSearch.NO_PARENT; vertex = scratch.parent(vertex), i--) {
+            checkpoints[i] = vertex;
+            weights[i] = scratch.weight(vertex);
+            distances[i] = scratch.distance(vertex);
+        }
+        return new RoutePath(checkpoints, weights, distances);
+    }
+
+    boolean isFound() {
+        return checkpoints.length > 0;
+    }
+
+    int size() {
+        return checkpoints.length;
+    }
+
+    int checkpoint(int index) {
+        return checkpoints[index];
+    }
+
+    int weight(int index) {
+        return weights[index];
+    }
+
+    int distance(int index) {
+        return distances[index];
+    }
+    boolean sameCheckpoints(RoutePath other) {
+        return Arrays.equals(checkpoints, other.checkpoints);
+    }
+    /*
+    @param departure_minute int, minute at which the train leaves the first checkpoint
+    @return minute at which the train reaches every checkpoint of the path
+     */
+    int[] arrivalMinutes(int departure_minute) {
+        int[] arrival_minutes = new int[distances.length];
+        for (int i = 0; i < distances.length; i++) {
+            arrival_minutes[i] = departure_minute
+                    + DijkstraTrainAlgorithmPQ.Graph.checkpoint_time_finder(DijkstraTrainAlgorithmPQ.TRAIN_VELOCITY, distances[i]);
+        }
+        return arrival_minutes;
+    }
+}
@@ -0,0 +1,383 @@
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
+
+/*
+thread-safe, reentrant route queries on a shared RailwayNetwork
+the network is read-only and every thread searches on its own SearchScratch, so any number of threads can call
+query at the same time without locking; results are returned instead of being printed or kept in static fields
+the network can be replaced or have single edges changed while queries run, a query sees either the old or the
+new network with its hierarchies; updates are serialised among each other
+an edge change drops the hierarchy of its direction instead of preprocessing it on the caller's thread, that
+direction is searched with plain Dijkstra until a background thread has rebuilt the hierarchy and swapped it in
+every query is timed into RoutingMetrics while it is enabled and committed as a RouteQueryEvent to flight recordings
+ */
+public final class RouteQueryEngine {
+    private static final ExecutorService HIERARCHY_BUILDER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "hierarchy-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Routing routing;
+    private final boolean use_hierarchies;
+    private final RouteCache cache;
+    private CompletableFuture<Void> hierarchy_builds = CompletableFuture.completedFuture(null);
+
+    public RouteQueryEngine(RailwayNetwork network) {
+        this(network, false, null);
+    }
+
+    private RouteQueryEngine(RailwayNetwork network, boolean use_hierarchies, RouteCache cache) {
+        this.use_hierarchies = use_hierarchies;
+        this.cache = cache;
+        this.routing = new Routing(network, use_hierarchies);
+    }
+    /*
+    preprocesses a contraction hierarchy for every direction graph of the network
+    @return an engine on the same network that answers point-to-point queries through the hierarchies
+     */
+    public RouteQueryEngine withContractionHierarchies() {
+        return new RouteQueryEngine(network(), true, cache);
+    }
+    /*
+    @param max_trees int, maximal number of shortest path trees kept by the cache
+    @return an engine on the same network that answers queries from a RouteCache of one-to-all trees, a miss
+            settles the whole graph from the source once instead of stopping at the destination
+     */
+    public RouteQueryEngine withCache(int max_trees) {
+        return new RouteQueryEngine(network(), use_hierarchies, new RouteCache(max_trees));
+    }
+
+    public RailwayNetwork network() {
+        return routing.network;
+    }
+    /*
+    @return the cache of this engine, null if it has none
+     */
+    public RouteCache cache() {
+        return cache;
+    }
+    /*
+    replaces the network, e.g. after it was rebuilt from the database; hierarchies are preprocessed again before
+    the new network becomes visible and cached trees of the old network are dropped
+    @param network RailwayNetwork, the new network
+     */
+    public synchronized void updateNetwork(RailwayNetwork network) {
+        routing = new Routing(network, use_hierarchies);
+        if (cache != null) {
+            cache.invalidate(network);
+        }
+    }
+    /*
+    takes the edge source -> destination of one direction out of service, e.g. a failed switch or track circuit
+    cached trees are repaired instead of dropped and only the hierarchy of that direction is preprocessed again, in
+    the background, so the call costs the copy of the changed graph and the tree repairs, not a hierarchy build
+    @throws IllegalArgumentException if there is no such edge
+     */
+    public void disableEdge(TrainDirection direction, int source, int destination) throws IllegalArgumentException {
+        updateEdge(direction, source, destination, network -> network.withEdgeEnabled(direction, source, destination, false));
+    }
+    /*
+    puts the edge source -> destination of one direction back into service
+    @throws IllegalArgumentException if there is no such edge
+     */
+    public void enableEdge(TrainDirection direction, int source, int destination) throws IllegalArgumentException {
+        updateEdge(direction, source, destination, network -> network.withEdgeEnabled(direction, source, destination, true));
+    }
+    /*
+    changes the cost of the edge source -> destination of one direction, e.g. for a speed restriction
+    @throws IllegalArgumentException if there is no such edge or {@code weight < 0 || distance < 0}
+     */
+    public void reweightEdge(TrainDirection direction, int source, int destination, int weight, int distance)
+            throws IllegalArgumentException {
+        updateEdge(direction, source, destination, network -> network.withEdgeCost(direction, source, destination, weight, distance));
+    }
+
+    private synchronized void updateEdge(TrainDirection direction, int source, int destination, UnaryOperator<RailwayNetwork> edit)
+            throws IllegalArgumentException {
+        Routing previous = routing;
+        RailwayNetwork updated = edit.apply(previous.network);
+        if (cache != null) {
+            cache.repair(previous.network, updated, direction, source, updated.edge(direction, source, destination));
+        }
+        routing = new Routing(previous, updated, direction);
+        if (cache != null) {
+            cache.invalidate(updated);
+        }
+        if (use_hierarchies) {
+            hierarchy_builds = CompletableFuture.runAsync(() -> completeHierarchies(updated), HIERARCHY_BUILDER);
+        }
+    }
+    /*
+    @return completes once the hierarchies dropped by the edge changes so far are swapped in again or superseded by
+            a later change, exceptionally if a build failed, in which case its direction stays on Dijkstra
+     */
+    synchronized CompletableFuture<Void> hierarchiesBuilt() {
+        return hierarchy_builds;
+    }
+    /*
+    builds the hierarchies that edge changes dropped from the routing of network and swaps them in one by one
+    a build is abandoned as soon as a later change replaced network, that change queued its own completion; the
+    builder is a single thread, so the completions run in the order of the changes
+     */
+    private void completeHierarchies(RailwayNetwork network) {
+        for (TrainDirection direction : TrainDirection.values()) {
+            Routing current = routing;
+            if (current.network != network) {
+                return;
+            }
+            if (current.hierarchies.containsKey(direction)) {
+                continue;
+            }
+            ContractionHierarchy hierarchy = ContractionHierarchy.build(network.graph(direction));
+            synchronized (this) {
+                if (routing.network != network) {
+                    return;
+                }
+                routing = new Routing(routing, direction, hierarchy);
+            }
+        }
+    }
+    /*
+    finds the shortest route of a train
+    @param request RouteRequest, direction, source, destination and departure minute of the train
+    @return the route, RouteResult.isFound() == false if destination is unreachable from source
+    @throws IllegalArgumentException if source or destination is not a checkpoint of the network
+     */
+    public RouteResult query(RouteRequest request) throws IllegalArgumentException {
+        boolean timed = RoutingMetrics.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
+        RouteQueryEvent event = new RouteQueryEvent();
+        event.begin();
+        Routing current = routing;
+        checkCheckpoint(current.network, request.sourceCheckpoint());
+        checkCheckpoint(current.network, request.destinationCheckpoint());
+        ContractionHierarchy hierarchy = current.hierarchies.get(request.direction());
+        RouteResult result;
+        if (cache != null) {
+            ShortestPathTree tree = cache.tree(current.network, request.direction(), request.sourceCheckpoint());
+            result = new RouteResult(request, tree.path(request.destinationCheckpoint()));
+            event.strategy = "cache";
+        } else if (hierarchy != null) {
+            result = new RouteResult(request, hierarchy.query(request.sourceCheckpoint(), request.destinationCheckpoint()));
+            event.strategy = "hierarchy";
+        } else {
+            SearchScratch scratch = DijkstraSearch.search(current.network.graph(request.direction()),
+                    request.sourceCheckpoint(), request.destinationCheckpoint());
+            result = new RouteResult(request, RoutePath.fromSearch(scratch, request.destinationCheckpoint()));
+            event.strategy = "dijkstra";
+        }
+        if (timed) {
+            RoutingMetrics.recordQuery(System.nanoTime() - start);
+        }
+        if (event.shouldCommit()) {
+            event.direction = request.direction().name();
+            event.sourceCheckpoint = request.sourceCheckpoint();
+            event.destinationCheckpoint = request.destinationCheckpoint();
+            event.found = result.isFound();
+            event.pathCheckpoints = result.size();
+            event.commit();
+        }
+        return result;
+    }
+
+    public RouteResult query(TrainDirection direction, int source_checkpoint, int destination_checkpoint, int departure_minute)
+            throws IllegalArgumentException {
+        return query(new RouteRequest(direction, source_checkpoint, destination_checkpoint, departure_minute));
+    }
+    /*
+    finds the shortest route between two labelled checkpoints
+    @throws IllegalArgumentException if {@code network.checkpointId(source) == -1 || network.checkpointId(destination) == -1}
+     */
+    public RouteResult query(TrainDirection direction, String source, String destination, int departure_minute)
+            throws IllegalArgumentException {
+        return query(direction, requireCheckpoint(source), requireCheckpoint(destination), departure_minute);
+    }
+    /*
+    finds the shortest route that visits the waypoints in the given order
+    the path of a leg does not depend on the time the leg starts, so the legs are searched independently, in
+    parallel when a pool is given and on the calling thread's reused scratch space otherwise; the legs are then
+    stitched together and every leg departs at the minute the train reached its first waypoint
+    the legs share no search state beyond the per-thread scratch arrays: every leg is a full point-to-point search
+    (or hierarchy query) of its own, the settled vertices of one leg do not seed the next, so k waypoints cost k - 1
+    independent searches
+    @param direction TrainDirection, graph the route is searched on
+    @param waypoints int[], vertex ids of source, mandatory via checkpoints and destination, at least two
+    @param departure_minute int, minute of the day at which the train departs from waypoints[0]
+    @param pool ExecutorService, workers for the legs, null to search the legs on the calling thread
+    @return the combined route, RouteResult.isFound() == false if any leg has no route
+    @throws IllegalArgumentException if {@code waypoints.length < 2} or a waypoint is not a checkpoint of the network
+    @throws InterruptedException if the calling thread is interrupted while waiting for the legs
+     */
+    public RouteResult queryVia(TrainDirection direction, int[] waypoints, int departure_minute, ExecutorService pool)
+            throws IllegalArgumentException, InterruptedException {
+        if (waypoints.length < 2) {
+            throw new IllegalArgumentException("a route needs a source and a destination");
+        }
+        List<RouteRequest> legs = new ArrayList<>(waypoints.length - 1);
+        for (int i = 0; i + 1 < waypoints.length; i++) {
+            legs.add(new RouteRequest(direction, waypoints[i], waypoints[i + 1], departure_minute));
+        }
+        List<RouteResult> leg_results;
+        if (pool == null) {
+            leg_results = new ArrayList<>(legs.size());
+            for (RouteRequest leg : legs) {
+                leg_results.add(query(leg));
+            }
+        } else {
+            leg_results = queryAll(legs, pool);
+        }
+        RouteRequest request = new RouteRequest(direction, waypoints[0], waypoints[waypoints.length - 1], departure_minute);
+        int total_size = 1;
+        for (RouteResult leg_result : leg_results) {
+            if (!leg_result.isFound()) {
+                return new RouteResult(request, RoutePath.NOT_FOUND);
+            }
+            total_size += leg_result.size() - 1;
+        }
+        int[] checkpoints = new int[total_size];
+        int[] weights = new int[total_size];
+        int[] distances = new int[total_size];
+        int[] arrival_minutes = new int[total_size];
+        checkpoints[0] = waypoints[0];
+        arrival_minutes[0] = departure_minute;
+        int position = 0;
+        for (RouteResult leg_result : leg_results) {
+            RoutePath leg = leg_result.path();
+            int leg_departure_minute = arrival_minutes[position];
+            int weight_offset = weights[position];
+            int distance_offset = distances[position];
+            for (int i = 1; i < leg.size(); i++) {
+                position++;
+                checkpoints[position] = leg.checkpoint(i);
+                weights[position] = weight_offset + leg.weight(i);
+                distances[position] = distance_offset + leg.distance(i);
+                arrival_minutes[position] = leg_departure_minute + leg_result.arrivalMinute(i) - departure_minute;
+            }
+        }
+        return new RouteResult(request, RoutePath.of(checkpoints, weights, distances), arrival_minutes);
+    }
+
+    public RouteResult queryVia(TrainDirection direction, int[] waypoints, int departure_minute) throws IllegalArgumentException {
+        try {
+            return queryVia(direction, waypoints, departure_minute, null);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    /*
+    finds alternative routes for dispatchers, e.g. when the shortest route runs over a blocked switch
+    the alternatives are searched on the direction graph without hierarchies or cache, see KShortestPaths
+    @param request RouteRequest, the train to route
+    @param k int, maximal number of routes
+    @param max_bytes long, heap bytes the routes of the query may take while they are searched
+    @param pool ExecutorService, workers for the spur searches, null to search on the calling thread
+    @return at most k loopless routes ordered by total weight, the first one is the shortest route; fewer if
+            there are no more routes or max_bytes does not hold more
+    @throws IllegalArgumentException if {@code k < 1 || max_bytes <= 0} or a checkpoint of request is not in the network
+    @throws InterruptedException if the calling thread is interrupted while waiting for the spur searches
+     */
+    public List<RouteResult> queryAlternatives(RouteRequest request, int k, long max_bytes, ExecutorService pool)
+            throws IllegalArgumentException, InterruptedException {
+        RailwayNetwork network = network();
+        checkCheckpoint(network, request.sourceCheckpoint());
+        checkCheckpoint(network, request.destinationCheckpoint());
+        List<RoutePath> paths = KShortestPaths.find(network.graph(request.direction()), request.sourceCheckpoint(),
+                request.destinationCheckpoint(), k, max_bytes, pool);
+        List<RouteResult> results = new ArrayList<>(paths.size());
+        for (RoutePath path : paths) {
+            results.add(new RouteResult(request, path));
+        }
+        return results;
+    }
+
+    public List<RouteResult> queryAlternatives(RouteRequest request, int k) throws IllegalArgumentException {
+        try {
+            return queryAlternatives(request, k, KShortestPaths.DEFAULT_MAX_BYTES, null);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    /*
+    answers many requests on the worker threads of pool
+    @param requests List<RouteRequest>, the requests to answer
+    @param pool ExecutorService, the workers the requests are spread over
+    @return the results in the order of requests
+    @throws InterruptedException if the calling thread is interrupted while waiting
+    @throws IllegalArgumentException if a request names an unknown checkpoint
+     */
+    public List<RouteResult> queryAll(List<RouteRequest> requests, ExecutorService pool) throws InterruptedException {
+        List<Callable<RouteResult>> tasks = new ArrayList<>(requests.size());
+        for (RouteRequest request : requests) {
+            tasks.add(() -> query(request));
+        }
+        List<RouteResult> results = new ArrayList<>(requests.size());
+        for (Future<RouteResult> future : pool.invokeAll(tasks)) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    int requireCheckpoint(String label) throws IllegalArgumentException {
+        int checkpoint = network().checkpointId(label);
+        if (checkpoint < 0) {
+            throw new IllegalArgumentException("There is no checkpoint " + label);
+        }
+        return checkpoint;
+    }
+
+    private static void checkCheckpoint(RailwayNetwork network, int checkpoint) throws IllegalArgumentException {
+        if (checkpoint < 0 || checkpoint >= network.totalVertices()) {
+            throw new IllegalArgumentException("There is no checkpoint " + checkpoint);
+        }
+    }
+
+    /*
+    a network together with the hierarchies preprocessed for it, swapped as one unit
+     */
+    private static final class Routing {
+        final RailwayNetwork network;
+        final Map<TrainDirection, ContractionHierarchy> hierarchies = new EnumMap<>(TrainDirection.class);
+
+        Routing(RailwayNetwork network, boolean use_hierarchies) {
+            this.network = network;
+            if (use_hierarchies) {
+                for (TrainDirection direction : TrainDirection.values()) {
+                    hierarchies.put(direction, ContractionHierarchy.build(network.graph(direction)));
+                }
+            }
+        }
+        /*
+        routing on network, which differs from previous.network only in the graph of changed_direction; the
+        hierarchy of that direction is left out until it is rebuilt
+         */
+        Routing(Routing previous, RailwayNetwork network, TrainDirection changed_direction) {
+            this.network = network;
+            hierarchies.putAll(previous.hierarchies);
+            hierarchies.remove(changed_direction);
+        }
+        /*
+        previous with the rebuilt hierarchy of direction
+         */
+        Routing(Routing previous, TrainDirection direction, ContractionHierarchy hierarchy) {
+            this.network = previous.network;
+            hierarchies.putAll(previous.hierarchies);
+            hierarchies.put(direction, hierarchy);
+        }
+    }
+}
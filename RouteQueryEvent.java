@@ -0,0 +1,35 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+flight recorder event committed once per route query, its duration is the latency of the query
+it costs nothing beyond the allocation the JIT removes while no recording has the event enabled
+ */
+@Name("railway.RouteQuery")
+@Label("Route Query")
+@Category("Railway")
+@Description("One route query of a RouteQueryEngine")
+@StackTrace(false)
+final class RouteQueryEvent extends jdk.jfr.Event {
+    @Label("Direction")
+    String direction;
+
+    @Label("Source Checkpoint")
+    int sourceCheckpoint;
+
+    @Label("Destination Checkpoint")
+    int destinationCheckpoint;
+
+    @Label("Strategy")
+    @Description("cache, hierarchy or dijkstra")
+    String strategy;
+
+    @Label("Found")
+    boolean found;
+
+    @Label("Path Checkpoints")
+    int pathCheckpoints;
+}
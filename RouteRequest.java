@@ -0,0 +1,63 @@
+import java.util.Objects;
+
+/*
+one route query: the direction of the train, the checkpoints it departs from and arrives at and its departure time
+ */
+public final class RouteRequest {
+    private final TrainDirection direction;
+    private final int source_checkpoint;
+    private final int destination_checkpoint;
+    private final int departure_minute;
+    /*
+    @param direction TrainDirection, graph the route is searched on
+    @param source_checkpoint int, vertex id the train departs from
+    @param destination_checkpoint int, vertex id the train arrives at
+    @param departure_minute int, minute of the day at which the train departs
+    @throws NullPointerException if {@code direction == null}
+     */
+    public RouteRequest(TrainDirection direction, int source_checkpoint, int destination_checkpoint, int departure_minute) {
+        this.direction = Objects.requireNonNull(direction);
+        this.source_checkpoint = source_checkpoint;
+        this.destination_checkpoint = destination_checkpoint;
+        this.departure_minute = departure_minute;
+    }
+
+    public TrainDirection direction() {
+        return direction;
+    }
+
+    public int sourceCheckpoint() {
+        return source_checkpoint;
+    }
+
+    public int destinationCheckpoint() {
+        return destination_checkpoint;
+    }
+
+    public int departureMinute() {
+        return departure_minute;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof RouteRequest)) {
+            return false;
+        }
+        RouteRequest request = (RouteRequest) other;
+        return direction == request.direction && source_checkpoint == request.source_checkpoint
+                && destination_checkpoint == request.destination_checkpoint && departure_minute == request.departure_minute;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(direction, source_checkpoint, destination_checkpoint, departure_minute);
+    }
+
+    @Override
+    public String toString() {
+        return direction + " " + source_checkpoint + "-" + destination_checkpoint + " @" + departure_minute;
+    }
+}
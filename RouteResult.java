@@ -0,0 +1,93 @@
+import java.util.List;
+
+/*
+immutable answer to a RouteRequest: the checkpoints of the shortest path, the total weight from the source at every
+checkpoint and the minute at which the train arrives at every checkpoint
+arrival minutes count from midnight of the departure day and may exceed TrainClock.MINUTES_PER_DAY
+a route that does not exist has no checkpoints
+ */
+public final class RouteResult {
+    private final RouteRequest request;
+    private final RoutePath path;
+    private final int[] arrival_minutes;
+
+    RouteResult(RouteRequest request, RoutePath path) {
+        this(request, path, path.arrivalMinutes(request.departureMinute()));
+    }
+
+    RouteResult(RouteRequest request, RoutePath path, int[] arrival_minutes) {
+        this.request = request;
+        this.path = path;
+        this.arrival_minutes = arrival_minutes;
+    }
+
+    public RouteRequest request() {
+        return request;
+    }
+
+    public boolean isFound() {
+        return path.isFound();
+    }
+    /*
+    @return number of checkpoints on the path including source and destination, 0 if the route does not exist
+     */
+    public int size() {
+        return path.size();
+    }
+
+    public int checkpoint(int index) {
+        return path.checkpoint(index);
+    }
+
+    public int weight(int index) {
+        return path.weight(index);
+    }
+
+    public int arrivalMinute(int index) {
+        return arrival_minutes[index];
+    }
+    /*
+    @return total weight from source to destination, Integer.MAX_VALUE if the route does not exist
+     */
+    public int totalWeight() {
+        return isFound() ? path.weight(path.size() - 1) : Integer.MAX_VALUE;
+    }
+
+    public int[] checkpoints() {
+        int[] checkpoints = new int[path.size()];
+        for (int i = 0; i < checkpoints.length; i++) {
+            checkpoints[i] = path.checkpoint(i);
+        }
+        return checkpoints;
+    }
+
+    public int[] arrivalMinutes() {
+        return arrival_minutes.clone();
+    }
+
+    /*
+    renders the route the way the interactive prompt prints it, clock times are only formatted here
+    @param vertex_labels List<String>, checkpoint name of every vertex id
+    @return "A -> B -> C\tHH:MM -> HH:MM -> HH:MM", or a notice if the route does not exist
+     */
+    public String render(List<String> vertex_labels) {
+        if (!isFound()) {
+            return "Such shortest path does not exist!";
+        }
+        StringBuilder path_string = new StringBuilder();
+        StringBuilder times_string = new StringBuilder();
+        for (int i = 0; i < size(); i++) {
+            if (i > 0) {
+                path_string.append(" -> ");
+                times_string.append(" -> ");
+            }
+            path_string.append(vertex_labels.get(checkpoint(i)));
+            times_string.append(TrainClock.format(arrival_minutes[i]));
+        }
+        return path_string.append('\t').append(times_string).toString();
+    }
+
+    RoutePath path() {
+        return path;
+    }
+}
@@ -0,0 +1,268 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntToLongFunction;
+
+/*
+workloads of the routing benchmarks on synthetic networks, timed by the JMH benchmarks in src/jmh/java
+JMH refuses benchmark classes in the default package and a named package cannot refer to this one, so the JMH
+states look a workload up by name once per trial and afterwards only call the returned IntToLongFunction, whose
+argument counts the invocations and whose result JMH consumes; run them with
+    mvn -Pjmh test-compile exec:exec
+main prints the memory report of the networks
+    java RoutingBenchmark [checkpoints ...]
+checkpoints defaults to 1000 10000 100000 1000000
+the hierarchy benchmarks build a ContractionHierarchy of the rightwards graph and query it on the pairs of
+query.oneToOne; before they are timed, crossCheck compares the hierarchy with DijkstraSearch on QUERY_PAIRS pairs,
+prints the latency of both and refuses to run on a cost mismatch
+the update benchmarks close a random edge of a shortest path tree and compare repairing the tree, repairing it
+back after the edge reopens, and recomputing it from scratch; the scheduling benchmark reserves the routes of a day
+of TRAINS_PER_DAY trains spread over the day before the occupancy is cleared
+ */
+public final class RoutingBenchmark {
+    private static final long SEED = 20_240_601L;
+    private static final int QUERY_PAIRS = 1024;
+    private static final int EDGE_UPDATES = 16;
+    private static final int TRAINS_PER_DAY = 2000;
+    private static final int MATRIX_SOURCES = 64;
+    private static final int MATRIX_DESTINATIONS = 500;
+
+    private RoutingBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[]{1_000, 10_000, 100_000, 1_000_000} : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        for (int size : sizes) {
+            System.out.println(memoryReport(SyntheticRailwayNetwork.generate(size, SEED)));
+        }
+    }
+    /*
+    prepares one benchmark on the synthetic network of the given size
+    @param name String, construction.generator, construction.createEdge, query.oneToOne, query.oneToAll,
+           path.reconstruction, path.arrivalClock, hierarchy.build, hierarchy.query, update.closure.repair,
+           update.reopening.repair, update.recompute or schedule.train
+    @param checkpoints int, approximate number of checkpoints of the network
+    @return one invocation of the benchmark
+    @throws IllegalArgumentException if there is no benchmark called name
+    @throws IllegalStateException if a hierarchy query costs differently than DijkstraSearch
+     */
+    public static IntToLongFunction workload(String name, int checkpoints) throws IllegalArgumentException, IllegalStateException {
+        RailwayNetwork network = SyntheticRailwayNetwork.generate(checkpoints, SEED);
+        int totalVertices = network.totalVertices();
+        CompactGraph graph = network.graph(TrainDirection.RIGHT);
+        int[] sources = new int[QUERY_PAIRS];
+        int[] destinations = new int[QUERY_PAIRS];
+        Random random = new Random(SEED);
+        for (int i = 0; i < QUERY_PAIRS; i++) {
+            sources[i] = random.nextInt(totalVertices);
+            destinations[i] = random.nextInt(totalVertices);
+        }
+        switch (name) {
+            case "construction.generator":
+                return invocation -> SyntheticRailwayNetwork.generate(checkpoints, SEED).totalVertices();
+            case "construction.createEdge": {
+                int[][] edges = edgeList(graph);
+                return invocation -> {
+                    DijkstraTrainAlgorithmPQ.Graph legacy = new DijkstraTrainAlgorithmPQ.Graph(totalVertices);
+                    for (int[] edge : edges) {
+                        legacy.createEdge(edge[0], edge[1], edge[2], edge[3]);
+                    }
+                    return legacy.compactAdjacencyList().totalEdges();
+                };
+            }
+            case "query.oneToOne":
+                return invocation -> {
+                    int pair = invocation & (QUERY_PAIRS - 1);
+                    return DijkstraSearch.search(graph, sources[pair], destinations[pair]).weight(destinations[pair]);
+                };
+            case "query.oneToAll":
+                return invocation -> {
+                    int pair = invocation & (QUERY_PAIRS - 1);
+                    return DijkstraSearch.search(graph, sources[pair], DijkstraSearch.NO_TARGET).weight(destinations[pair]);
+                };
+            case "path.reconstruction": {
+                ShortestPathTree tree = ShortestPathTree.compute(graph, 0);
+                return invocation -> tree.path(destinations[invocation & (QUERY_PAIRS - 1)]).size();
+            }
+            case "path.arrivalClock": {
+                ShortestPathTree tree = ShortestPathTree.compute(graph, 0);
+                return invocation -> {
+                    RoutePath path = tree.path(destinations[invocation & (QUERY_PAIRS - 1)]);
+                    int[] arrivals = path.arrivalMinutes(invocation % TrainClock.MINUTES_PER_DAY);
+                    long checksum = 0;
+                    for (int arrival : arrivals) {
+                        checksum += TrainClock.format(arrival).charAt(4);
+                    }
+                    return checksum;
+                };
+            }
+            case "hierarchy.build":
+                crossCheck(graph);
+                return invocation -> ContractionHierarchy.build(graph).totalShortcuts();
+            case "hierarchy.query": {
+                ContractionHierarchy hierarchy = crossCheck(graph);
+                return invocation -> {
+                    int pair = invocation & (QUERY_PAIRS - 1);
+                    return hierarchy.query(sources[pair], destinations[pair]).size();
+                };
+            }
+            case "update.closure.repair":
+            case "update.reopening.repair":
+            case "update.recompute":
+                return update(name, graph, random, destinations[0]);
+            case "schedule.train": {
+                TrainScheduler scheduler = new TrainScheduler(network);
+                return invocation -> {
+                    if (invocation % TRAINS_PER_DAY == 0) {
+                        scheduler.clear();
+                    }
+                    int pair = invocation & (QUERY_PAIRS - 1);
+                    RouteRequest request = new RouteRequest(TrainDirection.RIGHT, sources[pair], destinations[pair],
+                            (int) ((long) invocation * TrainClock.MINUTES_PER_DAY / TRAINS_PER_DAY % TrainClock.MINUTES_PER_DAY));
+                    return scheduler.schedule(request).size();
+                };
+            }
+            default:
+                throw new IllegalArgumentException("unknown benchmark " + name);
+        }
+    }
+    /*
+    answers a batch of QUERY_PAIRS one-to-one queries per invocation with RouteQueryEngine.queryAll on a pool of
+    threads platform threads, so the throughput per thread count shows how the engine scales across cores
+    @param checkpoints int, approximate number of checkpoints of the network
+    @param threads int, workers of the pool, at least 1
+    @return one invocation, QUERY_PAIRS queries, returning the sum of the found weights
+     */
+    public static IntToLongFunction queryAllWorkload(int checkpoints, int threads) {
+        RailwayNetwork network = SyntheticRailwayNetwork.generate(checkpoints, SEED);
+        RouteQueryEngine engine = new RouteQueryEngine(network);
+        List<RouteRequest> requests = new ArrayList<>(QUERY_PAIRS);
+        Random random = new Random(SEED);
+        for (int i = 0; i < QUERY_PAIRS; i++) {
+            requests.add(new RouteRequest(TrainDirection.RIGHT, random.nextInt(network.totalVertices()),
+                    random.nextInt(network.totalVertices()), 0));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "query-all-benchmark");
+            thread.setDaemon(true);
+            return thread;
+        });
+        return invocation -> {
+            long weights = 0;
+            try {
+                for (RouteResult result : engine.queryAll(requests, pool)) {
+                    weights += result.isFound() ? result.totalWeight() : 0;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            return weights;
+        };
+    }
+    /*
+    builds the hierarchy of graph and checks it against DijkstraSearch on QUERY_PAIRS random pairs
+    @return the hierarchy
+    @throws IllegalStateException if a hierarchy query costs differently than DijkstraSearch
+     */
+    static ContractionHierarchy crossCheck(CompactGraph graph) throws IllegalStateException {
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+        ContractionHierarchy.CrossCheck check = hierarchy.crossCheck(graph, QUERY_PAIRS, SEED);
+        System.out.println(graph.totalVertices() + " checkpoints, " + hierarchy.totalShortcuts() + " shortcuts: " + check);
+        if (check.cost_mismatches > 0) {
+            throw new IllegalStateException("contraction hierarchy disagrees with DijkstraSearch: " + check);
+        }
+        return hierarchy;
+    }
+    /*
+    computes a TravelTimeMatrix of MATRIX_SOURCES random sources by MATRIX_DESTINATIONS random destinations of the
+    rightwards graph per invocation, on a pool of one worker per core
+    @param checkpoints int, approximate number of checkpoints of the network
+    @return one invocation, MATRIX_SOURCES * MATRIX_DESTINATIONS pairs, returning the sum of the reachable travel minutes
+     */
+    public static IntToLongFunction matrixWorkload(int checkpoints) {
+        CompactGraph graph = SyntheticRailwayNetwork.generate(checkpoints, SEED).graph(TrainDirection.RIGHT);
+        Random random = new Random(SEED);
+        int[] sources = random.ints(MATRIX_SOURCES, 0, graph.totalVertices()).toArray();
+        int[] destinations = random.ints(MATRIX_DESTINATIONS, 0, graph.totalVertices()).toArray();
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        return invocation -> {
+            long minutes = 0;
+            for (int[] row : TravelTimeMatrix.compute(graph, sources, destinations, pool)) {
+                for (int travel_minutes : row) {
+                    minutes += travel_minutes == TravelTimeMatrix.UNREACHABLE ? 0 : travel_minutes;
+                }
+            }
+            return minutes;
+        };
+    }
+    /*
+    closes EDGE_UPDATES random edges of the shortest path tree rooted at 0, one after the other
+     */
+    private static IntToLongFunction update(String name, CompactGraph graph, Random random, int destination) {
+        ShortestPathTree tree = ShortestPathTree.compute(graph, 0);
+        int[] closed_tails = new int[EDGE_UPDATES];
+        int[] closed_edges = new int[EDGE_UPDATES];
+        CompactGraph[] closed_graphs = new CompactGraph[EDGE_UPDATES];
+        ShortestPathTree[] closed_trees = new ShortestPathTree[EDGE_UPDATES];
+        for (int i = 0; i < EDGE_UPDATES; i++) {
+            int head;
+            do {
+                head = random.nextInt(graph.totalVertices());
+            } while (tree.parent(head) == DijkstraSearch.NO_PARENT);
+            closed_tails[i] = tree.parent(head);
+            closed_edges[i] = graph.findEdge(closed_tails[i], head);
+            closed_graphs[i] = graph.withEdgeEnabled(closed_edges[i], false);
+            closed_trees[i] = ShortestPathTree.compute(closed_graphs[i], 0);
+        }
+        switch (name) {
+            case "update.closure.repair":
+                return invocation -> {
+                    int i = invocation % EDGE_UPDATES;
+                    return tree.repair(graph, closed_graphs[i], closed_tails[i], closed_edges[i]).weight(destination);
+                };
+            case "update.reopening.repair":
+                return invocation -> {
+                    int i = invocation % EDGE_UPDATES;
+                    return closed_trees[i].repair(closed_graphs[i], graph, closed_tails[i], closed_edges[i]).weight(destination);
+                };
+            default:
+                return invocation -> ShortestPathTree.compute(closed_graphs[invocation % EDGE_UPDATES], 0).weight(destination);
+        }
+    }
+
+    /*
+    compares the heap bytes of both direction graphs with two separate graphs of int weights and distances per edge,
+    the incoming edge lists of both directions are built first as tree repair needs them
+     */
+    static String memoryReport(RailwayNetwork network) {
+        long separate = 0;
+        for (TrainDirection direction : TrainDirection.values()) {
+            CompactGraph graph = network.graph(direction);
+            if (graph.totalVertices() > 0) {
+                graph.firstIncoming(0);
+            }
+            separate += CompactGraph.intCostFootprintBytes(graph.totalVertices(), graph.totalEdges())
+                    + 4L * (graph.totalVertices() + 1) + 8L * graph.totalEdges() + 48;
+        }
+        return String.format("memory %d checkpoints: %.1f MB shared, %.1f MB as two separate graphs (%.0f%% saved)",
+                network.totalVertices(), network.memoryFootprintBytes() / 1e6, separate / 1e6,
+                100.0 * (separate - network.memoryFootprintBytes()) / separate);
+    }
+
+    private static int[][] edgeList(CompactGraph graph) {
+        int[][] edges = new int[graph.totalEdges()][];
+        for (int vertex = 0; vertex < graph.totalVertices(); vertex++) {
+            for (int edge = graph.firstEdge(vertex); edge < graph.endEdge(vertex); edge++) {
+                edges[edge] = new int[]{vertex, graph.destination(edge), graph.weight(edge), graph.distance(edge)};
+            }
+        }
+        return edges;
+    }
+}
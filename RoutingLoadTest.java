@@ -0,0 +1,144 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+closed-loop load test of a RoutingServer on localhost
+a server is started on a synthetic network of the given size, then every client is a virtual thread that sends a
+request, waits for its answer and sends the next one, for a warmup period and then for the measured period; the
+requests are drawn from a pool of distinct routes, so a small pool makes identical requests meet in flight and
+exercises the coalescing; it reports throughput, the latency percentiles seen by the clients and how many requests
+were coalesced, first for single routes and then for batches of BATCH_SIZE routes
+run with
+    java RoutingLoadTest [checkpoints] [clients] [seconds] [distinct routes]
+ */
+public final class RoutingLoadTest {
+    private static final long SEED = 20_240_601L;
+    private static final int WARMUP_SECONDS = 3;
+    private static final int BATCH_SIZE = 32;
+
+    private RoutingLoadTest() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int checkpoints = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int distinct = args.length > 3 ? Integer.parseInt(args[3]) : 1024;
+        RoutingServer.useTcpNoDelay();
+        RailwayNetwork network = SyntheticRailwayNetwork.generate(checkpoints, SEED);
+        RoutingServer server = new RoutingServer(new RouteQueryEngine(network).withContractionHierarchies(),
+                new InetSocketAddress("localhost", 0));
+        server.start();
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(threads).build();
+            String base = "http://localhost:" + server.address().getPort();
+            List<HttpRequest> routes = new ArrayList<>(distinct);
+            List<HttpRequest> batches = new ArrayList<>(distinct);
+            Random random = new Random(SEED);
+            for (int i = 0; i < distinct; i++) {
+                routes.add(HttpRequest.newBuilder(URI.create(base + "/route?" + randomQuery(network, random))).GET().build());
+                StringBuilder batch = new StringBuilder("[");
+                for (int j = 0; j < BATCH_SIZE; j++) {
+                    batch.append(j > 0 ? "," : "").append(randomObject(network, random));
+                }
+                batches.add(HttpRequest.newBuilder(URI.create(base + "/route/batch"))
+                        .POST(HttpRequest.BodyPublishers.ofString(batch.append(']').toString())).build());
+            }
+            System.out.println(String.format("%d checkpoints, %d clients, %d distinct requests, %d s", network.totalVertices(),
+                    clients, distinct, seconds));
+            System.out.println(String.format("%-8s %10s %10s %10s %10s %10s %10s %8s %10s", "endpoint", "requests", "qps",
+                    "routes/s", "p50 us", "p99 us", "max us", "errors", "coalesced"));
+            for (String endpoint : new String[]{"route", "batch"}) {
+                List<HttpRequest> pool = endpoint.equals("route") ? routes : batches;
+                int routes_per_request = endpoint.equals("route") ? 1 : BATCH_SIZE;
+                run(client, pool, clients, WARMUP_SECONDS);
+                long coalesced = server.coalesced();
+                Phase phase = run(client, pool, clients, seconds);
+                System.out.println(String.format("%-8s %10d %10.0f %10.0f %10.1f %10.1f %10.1f %8d %10d", endpoint,
+                        phase.latencies.count(), phase.latencies.count() / phase.seconds,
+                        phase.latencies.count() * routes_per_request / phase.seconds, phase.latencies.percentileNanos(50) / 1e3,
+                        phase.latencies.percentileNanos(99) / 1e3, phase.latencies.maxNanos() / 1e3, phase.errors.sum(),
+                        server.coalesced() - coalesced));
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+    /*
+    latencies and failures of one timed phase
+     */
+    private static final class Phase {
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+        double seconds;
+    }
+    /*
+    lets clients send requests from pool until seconds have passed
+    @return the latencies of the answered requests, errors counts failed requests and non-200 answers
+     */
+    private static Phase run(HttpClient client, List<HttpRequest> pool, int clients, int seconds) throws InterruptedException {
+        Phase phase = new Phase();
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+        List<Thread> workers = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            workers.add(Thread.ofVirtual().start(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    HttpRequest request = pool.get(random.nextInt(pool.size()));
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        if (response.statusCode() == 200) {
+                            phase.latencies.record(System.nanoTime() - sent);
+                        } else {
+                            phase.errors.increment();
+                        }
+                    } catch (IOException e) {
+                        phase.errors.increment();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        phase.seconds = (System.nanoTime() - start) / 1e9;
+        return phase;
+    }
+
+    private static String randomQuery(RailwayNetwork network, Random random) {
+        String[] route = randomRoute(network, random);
+        return "direction=" + route[0] + "&source=" + URLEncoder.encode(route[1], StandardCharsets.UTF_8)
+                + "&destination=" + URLEncoder.encode(route[2], StandardCharsets.UTF_8) + "&departure=" + route[3];
+    }
+
+    private static String randomObject(RailwayNetwork network, Random random) {
+        String[] route = randomRoute(network, random);
+        return "{\"direction\":\"" + route[0] + "\",\"source\":\"" + route[1] + "\",\"destination\":\"" + route[2]
+                + "\",\"departure\":\"" + route[3] + "\"}";
+    }
+    /*
+    @return direction, source label, destination label and departure clock time of a random route
+     */
+    private static String[] randomRoute(RailwayNetwork network, Random random) {
+        List<String> vertex_labels = network.vertexLabels();
+        return new String[]{random.nextBoolean() ? "right" : "left", vertex_labels.get(random.nextInt(vertex_labels.size())),
+                vertex_labels.get(random.nextInt(vertex_labels.size())), TrainClock.format(random.nextInt(TrainClock.MINUTES_PER_DAY))};
+    }
+}
@@ -0,0 +1,204 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/*
+process-wide counters of the routing hot paths and a latency histogram of the route queries
+a search counts settled vertices, relaxations and heap operations in locals and adds them to striped LongAdder
+counters once when it finishes, so instrumentation costs a volatile read per search while it is switched off and a
+few uncontended adds per search while it is on; it is off until setEnabled(true) or -Drailway.metrics=true
+the metrics are exposed as a JMX MXBean (registerMBean), as a periodic one-line dump (startPeriodicDump) and
+per query as the flight recorder event RouteQueryEvent; the main methods register the MXBean and schedule the dump
+whether or not the metrics are on, so setEnabled over JMX starts both without a restart
+ */
+public final class RoutingMetrics {
+    public static final String OBJECT_NAME = "railway:type=RoutingMetrics";
+    private static volatile boolean enabled = Boolean.getBoolean("railway.metrics");
+    private static final LongAdder queries = new LongAdder();
+    private static final LongAdder searches = new LongAdder();
+    private static final LongAdder settled_vertices = new LongAdder();
+    private static final LongAdder relaxations = new LongAdder();
+    private static final LongAdder heap_operations = new LongAdder();
+    private static final LatencyHistogram latencies = new LatencyHistogram();
+    private static final ScheduledExecutorService DUMPER = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "routing-metrics-dump");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private RoutingMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        RoutingMetrics.enabled = enabled;
+    }
+    /*
+    adds the work of one finished search
+    @param settled int, vertices taken from the heap
+    @param relaxed int, edges relaxed
+    @param heap_updates int, inserts and decrease-keys, the polls are counted by settled
+     */
+    static void recordSearch(int settled, int relaxed, int heap_updates) {
+        searches.increment();
+        settled_vertices.add(settled);
+        relaxations.add(relaxed);
+        heap_operations.add(settled + heap_updates);
+    }
+    /*
+    @param nanos long, latency of one route query
+     */
+    static void recordQuery(long nanos) {
+        queries.increment();
+        latencies.record(nanos);
+    }
+
+    public static long queries() {
+        return queries.sum();
+    }
+
+    public static long searches() {
+        return searches.sum();
+    }
+
+    public static long settledVertices() {
+        return settled_vertices.sum();
+    }
+
+    public static long relaxations() {
+        return relaxations.sum();
+    }
+
+    public static long heapOperations() {
+        return heap_operations.sum();
+    }
+
+    public static LatencyHistogram latencies() {
+        return latencies;
+    }
+
+    public static void reset() {
+        queries.reset();
+        searches.reset();
+        settled_vertices.reset();
+        relaxations.reset();
+        heap_operations.reset();
+        latencies.reset();
+    }
+    /*
+    @return one line with the counters and the latency percentiles
+     */
+    public static String summary() {
+        long searches = searches();
+        return String.format("queries=%d searches=%d settled/search=%.1f relaxations/search=%.1f heap-ops/search=%.1f latency %s",
+                queries(), searches, perSearch(settledVertices(), searches), perSearch(relaxations(), searches),
+                perSearch(heapOperations(), searches), latencies);
+    }
+    /*
+    registers the MXBean with the platform MBean server, registering it again has no effect
+    @throws IllegalStateException if the MBean server refuses the bean
+     */
+    public static void registerMBean() throws IllegalStateException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException ignored) {
+            // registered by an earlier call
+        } catch (JMException e) {
+            throw new IllegalStateException("cannot register " + OBJECT_NAME, e);
+        }
+    }
+    /*
+    prints summary() to out every period on a daemon thread while the metrics are enabled
+    @return the scheduled dump, cancel it to stop dumping
+     */
+    public static ScheduledFuture<?> startPeriodicDump(long period, TimeUnit unit, PrintStream out) {
+        return DUMPER.scheduleAtFixedRate(() -> {
+            if (enabled) {
+                out.println(summary());
+            }
+        }, period, period, unit);
+    }
+
+    private static double perSearch(long total, long searches) {
+        return searches == 0 ? 0 : (double) total / searches;
+    }
+
+    private static final class Bean implements RoutingMetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return RoutingMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            RoutingMetrics.setEnabled(enabled);
+        }
+
+        @Override
+        public long getQueries() {
+            return queries();
+        }
+
+        @Override
+        public long getSearches() {
+            return searches();
+        }
+
+        @Override
+        public long getSettledVertices() {
+            return settledVertices();
+        }
+
+        @Override
+        public long getRelaxations() {
+            return relaxations();
+        }
+
+        @Override
+        public long getHeapOperations() {
+            return heapOperations();
+        }
+
+        @Override
+        public double getLatencyMeanMicros() {
+            return latencies.meanNanos() / 1e3;
+        }
+
+        @Override
+        public double getLatencyP50Micros() {
+            return latencies.percentileNanos(50) / 1e3;
+        }
+
+        @Override
+        public double getLatencyP99Micros() {
+            return latencies.percentileNanos(99) / 1e3;
+        }
+
+        @Override
+        public double getLatencyP999Micros() {
+            return latencies.percentileNanos(99.9) / 1e3;
+        }
+
+        @Override
+        public double getLatencyMaxMicros() {
+            return latencies.maxNanos() / 1e3;
+        }
+
+        @Override
+        public void reset() {
+            RoutingMetrics.reset();
+        }
+    }
+}
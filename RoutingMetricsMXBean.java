@@ -0,0 +1,31 @@
+/*
+management interface of RoutingMetrics, registered as railway:type=RoutingMetrics
+latencies are reported in microseconds
+ */
+public interface RoutingMetricsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getQueries();
+
+    long getSearches();
+
+    long getSettledVertices();
+
+    long getRelaxations();
+
+    long getHeapOperations();
+
+    double getLatencyMeanMicros();
+
+    double getLatencyP50Micros();
+
+    double getLatencyP99Micros();
+
+    double getLatencyP999Micros();
+
+    double getLatencyMaxMicros();
+
+    void reset();
+}
@@ -0,0 +1,479 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+embedded HTTP/JSON front end of a RouteQueryEngine on the JDK HttpServer
+every exchange is handled on its own virtual thread, so a slow client never holds a platform thread; the searches
+themselves run on a fixed pool of one platform thread per core, whose threads keep their thread-local search
+scratch, so a request does not allocate O(|V|) arrays as it would on a fresh virtual thread; the engine is
+thread-safe and needs no further locking
+    GET  /route?direction=right&source=A&destination=B&departure=08:30   one route
+    POST /route/batch   [{"direction":"right","source":"A","destination":"B","departure":"08:30"}, ...]
+checkpoints are given by label and times in xx:xx format as at the prompt; a route is answered as
+    {"direction":"right","source":"A","destination":"B","departure":"08:30","found":true,"weight":12,
+     "path":[{"checkpoint":"A","arrival":"08:30","minute":510}, ...]}
+a batch is answered as a JSON array of routes in request order, its routes are searched concurrently
+identical requests that are in flight at the same time are coalesced: the first one searches, the others wait for
+its CompletableFuture, so a burst of the same query costs one search; a bad request is answered with status 400
+and {"error":"..."}, a search that fails on the server's side, or that the search pool rejects, with status 500
+small answers are written as separate header and body packets, so without TCP_NODELAY the client's delayed
+acknowledgement stalls every keep-alive exchange for tens of milliseconds; the JDK server only reads the JVM-wide
+-Dsun.net.httpserver.nodelay=true at launch, main sets it unless it is given, embedders should pass it themselves
+ */
+public final class RoutingServer {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int MAX_BATCH_SIZE = 10_000;
+    private static final int MAX_BODY_BYTES = 4 << 20;
+    private final RouteQueryEngine engine;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService search_pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+        Thread thread = new Thread(task, "routing-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ConcurrentHashMap<RouteRequest, CompletableFuture<RouteResult>> in_flight = new ConcurrentHashMap<>();
+    private final LongAdder searched = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    /*
+    binds the server without starting it
+    @param engine RouteQueryEngine, answers the queries
+    @param address InetSocketAddress, address to listen on, port 0 picks a free port
+    @throws IOException if the address cannot be bound
+     */
+    public RoutingServer(RouteQueryEngine engine, InetSocketAddress address) throws IOException {
+        this.engine = engine;
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/route", this::handleRoute);
+        server.createContext("/route/batch", this::handleBatch);
+    }
+
+    public void start() {
+        server.start();
+    }
+    /*
+    stops accepting exchanges and waits up to delay_seconds for the running ones
+     */
+    public void stop(int delay_seconds) {
+        server.stop(delay_seconds);
+        executor.shutdown();
+        search_pool.shutdown();
+    }
+    /*
+    @return the bound address, with the chosen port if the server was bound to port 0
+     */
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+    /*
+    @return number of requests that started a search
+     */
+    public long searched() {
+        return searched.sum();
+    }
+    /*
+    @return number of requests answered by the search of an identical request in flight
+     */
+    public long coalesced() {
+        return coalesced.sum();
+    }
+    /*
+    answers request, joining the search of an identical request if one is in flight
+    @throws IllegalArgumentException if a checkpoint of request is not in the network
+    @throws RuntimeException if the search fails otherwise or the search pool rejects it
+     */
+    RouteResult query(RouteRequest request) throws IllegalArgumentException {
+        try {
+            return queryAsync(request).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+    /*
+    starts the search of request on the search pool, or joins the search of an identical request in flight
+    @return the future answer, completed exceptionally if the search fails
+     */
+    CompletableFuture<RouteResult> queryAsync(RouteRequest request) {
+        CompletableFuture<RouteResult> own = new CompletableFuture<>();
+        CompletableFuture<RouteResult> running = in_flight.putIfAbsent(request, own);
+        if (running != null) {
+            coalesced.increment();
+            return running;
+        }
+        searched.increment();
+        try {
+            search_pool.execute(() -> {
+                try {
+                    own.complete(engine.query(request));
+                } catch (RuntimeException e) {
+                    own.completeExceptionally(e);
+                } finally {
+                    in_flight.remove(request, own);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            in_flight.remove(request, own);
+            own.completeExceptionally(e);
+        }
+        return own;
+    }
+
+    private void handleRoute(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestURI().getPath().equals("/route")) {
+                respond(exchange, 404, error("no such endpoint"));
+                return;
+            }
+            if (!exchange.getRequestMethod().equals("GET")) {
+                respond(exchange, 405, error("use GET"));
+                return;
+            }
+            try {
+                RouteRequest request = request(queryParameters(exchange.getRequestURI().getRawQuery()));
+                StringBuilder json = new StringBuilder(256);
+                appendResult(json, query(request));
+                respond(exchange, 200, json.toString());
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, error(e));
+            } catch (RuntimeException e) {
+                failed(exchange, e);
+            }
+        }
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, error("use POST"));
+                return;
+            }
+            try {
+                List<Map<String, String>> objects = JsonReader.parseObjects(body(exchange));
+                if (objects.size() > MAX_BATCH_SIZE) {
+                    respond(exchange, 413, error("a batch holds at most " + MAX_BATCH_SIZE + " requests"));
+                    return;
+                }
+                List<RouteRequest> requests = new ArrayList<>(objects.size());
+                for (Map<String, String> object : objects) {
+                    requests.add(request(object));
+                }
+                List<CompletableFuture<RouteResult>> results = new ArrayList<>(requests.size());
+                for (RouteRequest request : requests) {
+                    results.add(queryAsync(request));
+                }
+                StringBuilder json = new StringBuilder(256 * requests.size() + 2).append('[');
+                for (int i = 0; i < results.size(); i++) {
+                    if (i > 0) {
+                        json.append(',');
+                    }
+                    appendResult(json, results.get(i).join());
+                }
+                respond(exchange, 200, json.append(']').toString());
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, error(e));
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IllegalArgumentException) {
+                    respond(exchange, 400, error(e.getCause()));
+                } else {
+                    failed(exchange, e.getCause() != null ? e.getCause() : e);
+                }
+            } catch (RuntimeException e) {
+                failed(exchange, e);
+            }
+        }
+    }
+    /*
+    @param parameters Map<String, String>, direction, source, destination and departure of one route
+    @throws IllegalArgumentException if a parameter is missing or invalid
+     */
+    private RouteRequest request(Map<String, String> parameters) throws IllegalArgumentException {
+        TrainDirection direction = TrainDirection.fromInput(parameter(parameters, "direction"));
+        int source_checkpoint = engine.requireCheckpoint(parameter(parameters, "source"));
+        int destination_checkpoint = engine.requireCheckpoint(parameter(parameters, "destination"));
+        int departure_minute = TrainClock.parse(parameter(parameters, "departure"));
+        return new RouteRequest(direction, source_checkpoint, destination_checkpoint, departure_minute);
+    }
+
+    private static String parameter(Map<String, String> parameters, String name) throws IllegalArgumentException {
+        String value = parameters.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("missing " + name);
+        }
+        return value;
+    }
+
+    private static Map<String, String> queryParameters(String raw_query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (raw_query == null) {
+            return parameters;
+        }
+        for (String pair : raw_query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private void appendResult(StringBuilder json, RouteResult result) {
+        List<String> vertex_labels = engine.network().vertexLabels();
+        RouteRequest request = result.request();
+        json.append("{\"direction\":");
+        appendString(json, request.direction().name().toLowerCase());
+        json.append(",\"source\":");
+        appendString(json, vertex_labels.get(request.sourceCheckpoint()));
+        json.append(",\"destination\":");
+        appendString(json, vertex_labels.get(request.destinationCheckpoint()));
+        json.append(",\"departure\":");
+        appendString(json, TrainClock.format(request.departureMinute()));
+        json.append(",\"found\":").append(result.isFound());
+        if (result.isFound()) {
+            json.append(",\"weight\":").append(result.totalWeight());
+        }
+        json.append(",\"path\":[");
+        for (int i = 0; i < result.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"checkpoint\":");
+            appendString(json, vertex_labels.get(result.checkpoint(i)));
+            json.append(",\"arrival\":");
+            appendString(json, TrainClock.format(result.arrivalMinute(i)));
+            json.append(",\"minute\":").append(result.arrivalMinute(i)).append('}');
+        }
+        json.append("]}");
+    }
+
+    private static String error(String message) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendString(json, message);
+        return json.append('}').toString();
+    }
+    /*
+    @return the error object of e, named by its class if it carries no message
+     */
+    private static String error(Throwable e) {
+        return error(e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+    }
+    /*
+    answers an exchange whose search failed on the server's side, a rejected search included, with status 500
+     */
+    private static void failed(HttpExchange exchange, Throwable e) throws IOException {
+        e.printStackTrace();
+        respond(exchange, 500, error(e));
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static String body(HttpExchange exchange) throws IOException, IllegalArgumentException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("request body exceeds " + MAX_BODY_BYTES + " bytes");
+            }
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+    /*
+    serves the network of the snapshot; the network is loaded from the database if the snapshot is missing, corrupt,
+    of another format version or was written from a route table with another fingerprint, and on every start with
+    -Drailway.snapshot.rebuild=true; while the database cannot be reached the snapshot is served unchecked
+    run with
+        java -Drailway.http.port=8080 RoutingServer
+     */
+    public static void main(String[] args) throws IOException {
+        useTcpNoDelay();
+        RailwayNetwork network = null;
+        try {
+            network = GraphSnapshot.loadOrRebuild(Paths.get(System.getProperty("railway.snapshot", "railway-network.snapshot")),
+                    () -> RouteGraphLoader.fingerprint(DatabaseManager.getInstance().getConnection()),
+                    () -> RouteGraphLoader.load(DatabaseManager.getInstance().getConnection()));
+        } catch (SQLException throwables) {
+            throwables.printStackTrace();
+            System.exit(0);
+        }
+        // registered even while the metrics are off, so they can be switched on over JMX without a restart
+        RoutingMetrics.registerMBean();
+        RoutingMetrics.startPeriodicDump(Long.getLong("railway.metrics.dumpSeconds", 60), TimeUnit.SECONDS, System.err);
+        RoutingServer server = new RoutingServer(new RouteQueryEngine(network).withContractionHierarchies(),
+                new InetSocketAddress(Integer.getInteger("railway.http.port", DEFAULT_PORT)));
+        server.start();
+        System.out.println("routing on http://localhost:" + server.address().getPort() + "/route");
+    }
+    /*
+    switches on TCP_NODELAY for every HttpServer of this JVM unless -Dsun.net.httpserver.nodelay is given, it must run
+    before the first server is created
+     */
+    static void useTcpNoDelay() {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+    /*
+    reads the body of a batch: a JSON array of flat objects whose values are strings or numbers
+     */
+    private static final class JsonReader {
+        private final String json;
+        private int position;
+
+        private JsonReader(String json) {
+            this.json = json;
+        }
+        /*
+        @throws IllegalArgumentException if json is not an array of flat objects
+         */
+        static List<Map<String, String>> parseObjects(String json) throws IllegalArgumentException {
+            JsonReader reader = new JsonReader(json);
+            List<Map<String, String>> objects = new ArrayList<>();
+            reader.expect('[');
+            if (!reader.consume(']')) {
+                do {
+                    objects.add(reader.object());
+                } while (reader.consume(','));
+                reader.expect(']');
+            }
+            reader.skipWhitespace();
+            if (reader.position != json.length()) {
+                throw reader.failure("end of input");
+            }
+            return objects;
+        }
+
+        private Map<String, String> object() {
+            Map<String, String> object = new HashMap<>();
+            expect('{');
+            if (consume('}')) {
+                return object;
+            }
+            do {
+                String name = string();
+                expect(':');
+                skipWhitespace();
+                object.put(name, position < json.length() && json.charAt(position) == '"' ? string() : number());
+            } while (consume(','));
+            expect('}');
+            return object;
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (position < json.length()) {
+                char c = json.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position >= json.length()) {
+                    break;
+                }
+                char escaped = json.charAt(position++);
+                switch (escaped) {
+                    case 'n': value.append('\n'); break;
+                    case 't': value.append('\t'); break;
+                    case 'r': value.append('\r'); break;
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'u':
+                        if (position + 4 > json.length()) {
+                            throw failure("four hex digits");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw failure("four hex digits");
+                        }
+                        position += 4;
+                        break;
+                    default: value.append(escaped);
+                }
+            }
+            throw failure("closing quote");
+        }
+
+        private String number() {
+            int start = position;
+            while (position < json.length() && "+-.eE0123456789".indexOf(json.charAt(position)) >= 0) {
+                position++;
+            }
+            if (start == position) {
+                throw failure("string or number");
+            }
+            return json.substring(start, position);
+        }
+
+        private void expect(char c) {
+            if (!consume(c)) {
+                throw failure("'" + c + "'");
+            }
+        }
+
+        private boolean consume(char c) {
+            skipWhitespace();
+            if (position < json.length() && json.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException failure(String expected) {
+            return new IllegalArgumentException("malformed JSON, expected " + expected + " at offset " + position);
+        }
+    }
+}
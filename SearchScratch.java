@@ -0,0 +1,89 @@
+import java.util.Arrays;
+
+/*
+reusable per-thread working arrays of a shortest path search
+instead of clearing the arrays before every run, a vertex's entries are only valid when its stamp equals the
+current generation, so starting a new search costs O(1) and allocates nothing once the arrays are large enough
+ */
+final class SearchScratch {
+    private static final ThreadLocal<SearchScratch> PER_THREAD = ThreadLocal.withInitial(SearchScratch::new);
+    private int generation;
+    private int[] reachedStamps = new int[0];
+    private int[] settledStamps = new int[0];
+    private int[] weights = new int[0];
+    private int[] distances = new int[0];
+    private int[] parents = new int[0];
+    final IndexedMinHeap heap = new IndexedMinHeap(0);
+    /*
+    @return the scratch space owned by the calling thread
+     */
+    static SearchScratch forCurrentThread() {
+        return PER_THREAD.get();
+    }
+    /*
+    invalidates the results of the previous search
+    @param totalVertices int, |V(G)| of the graph the next search runs on
+    @post {@code \forall int i; 0 <= i < totalVertices; !isReached(i)}
+     */
+    void reset(int totalVertices) {
+        heap.clear();
+        if (totalVertices > reachedStamps.length) {
+            reachedStamps = Arrays.copyOf(reachedStamps, totalVertices);
+            settledStamps = Arrays.copyOf(settledStamps, totalVertices);
+            weights = new int[totalVertices];
+            distances = new int[totalVertices];
+            parents = new int[totalVertices];
+            heap.ensureCapacity(totalVertices);
+        }
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(reachedStamps, 0);
+            Arrays.fill(settledStamps, 0);
+            generation = 1;
+        }
+    }
+
+    boolean isReached(int vertex) {
+        return reachedStamps[vertex] == generation;
+    }
+
+    boolean isSettled(int vertex) {
+        return settledStamps[vertex] == generation;
+    }
+
+    void reach(int vertex, int weight, int distance, int parent) {
+        reachedStamps[vertex] = generation;
+        weights[vertex] = weight;
+        distances[vertex] = distance;
+        parents[vertex] = parent;
+    }
+
+    void settle(int vertex) {
+        settledStamps[vertex] = generation;
+    }
+    /*
+    keeps the current search out of vertex by marking it settled without reaching it
+    @post {@code isSettled(vertex) && weight(vertex) == Integer.MAX_VALUE}
+     */
+    void exclude(int vertex) {
+        settledStamps[vertex] = generation;
+    }
+    /*
+    @return total weight from the source to vertex, Integer.MAX_VALUE if vertex was not reached
+     */
+    int weight(int vertex) {
+        return isReached(vertex) ? weights[vertex] : Integer.MAX_VALUE;
+    }
+    /*
+    @return total distance from the source to vertex, Integer.MAX_VALUE if vertex was not reached
+     */
+    int distance(int vertex) {
+        return isReached(vertex) ? distances[vertex] : Integer.MAX_VALUE;
+    }
+    /*
+    @return immediate predecessor of vertex, DijkstraSearch.NO_PARENT for the source and unreached vertices
+     */
+    int parent(int vertex) {
+        return isReached(vertex) ? parents[vertex] : DijkstraSearch.NO_PARENT;
+    }
+}
@@ -0,0 +1,217 @@
+import java.util.Arrays;
+
+/*
+immutable one-to-all shortest path tree of a source checkpoint
+it keeps the total weight, total distance and immediate predecessor of every vertex, so the path to any
+destination can be read off in O(path length) without searching again
+ */
+final class ShortestPathTree {
+    private final int source_checkpoint;
+    private final int[] weights;
+    private final int[] distances;
+    private final int[] parents;
+
+    ShortestPathTree(int source_checkpoint, int[] weights, int[] distances, int[] parents) {
+        this.source_checkpoint = source_checkpoint;
+        this.weights = weights;
+        this.distances = distances;
+        this.parents = parents;
+    }
+    /*
+    settles every vertex reachable from source_checkpoint and copies the result out of the scratch space
+    @param graph CompactGraph, the graph to search
+    @param source_checkpoint int, root of the tree
+    @return the tree
+     */
+    static ShortestPathTree compute(CompactGraph graph, int source_checkpoint) {
+        SearchScratch scratch = DijkstraSearch.search(graph, source_checkpoint, DijkstraSearch.NO_TARGET);
+        int totalVertices = graph.totalVertices();
+        int[] weights = new int[totalVertices];
+        int[] distances = new int[totalVertices];
+        int[] parents = new int[totalVertices];
+        for (int vertex = 0; vertex < totalVertices; vertex++) {
+            weights[vertex] = scratch.weight(vertex);
+            distances[vertex] = scratch.distance(vertex);
+            parents[vertex] = scratch.parent(vertex);
+        }
+        return new ShortestPathTree(source_checkpoint, weights, distances, parents);
+    }
+
+    int sourceCheckpoint() {
+        return source_checkpoint;
+    }
+
+    int totalVertices() {
+        return weights.length;
+    }
+
+    boolean isReached(int vertex) {
+        return weights[vertex] != Integer.MAX_VALUE;
+    }
+
+    int weight(int vertex) {
+        return weights[vertex];
+    }
+
+    int distance(int vertex) {
+        return distances[vertex];
+    }
+
+    int parent(int vertex) {
+        return parents[vertex];
+    }
+    /*
+    @param destination_checkpoint int, last checkpoint of the path
+    @return the tree path from the source to destination_checkpoint, RoutePath.NOT_FOUND if it is unreachable
+     */
+    RoutePath path(int destination_checkpoint) {
+        if (!isReached(destination_checkpoint)) {
+            return RoutePath.NOT_FOUND;
+        }
+        int length = 0;
+        for (int vertex = destination_checkpoint; vertex != DijkstraSearch.NO_PARENT; vertex = parents[vertex]) {
+            length++;
+        }
+        int[] checkpoints = new int[length];
+        int[] path_weights = new int[length];
+        int[] path_distances = new int[length];
+        for (int vertex = destination_checkpoint, i = length - 1; vertex != DijkstraSearch.NO_PARENT; vertex = parents[vertex], i--) {
+            checkpoints[i] = vertex;
+            path_weights[i] = weights[vertex];
+            path_distances[i] = distances[vertex];
+        }
+        return RoutePath.of(checkpoints, path_weights, path_distances);
+    }
+    /*
+    repairs the tree after one edge of its graph was disabled, enabled or re-weighted instead of recomputing it
+    a cheaper edge only re-settles the vertices it improves; a dearer or disabled tree edge resets the subtree
+    hanging below it, seeds every subtree vertex with its best incoming edge from outside the subtree and
+    re-settles the subtree alone, the vertices outside keep their entries because their tree paths do not use
+    the edge and no other cost went down
+    the repaired tree has the same weights and distances as a recomputed one, among paths of equal cost the
+    parents may differ
+    @param previous CompactGraph, the graph this tree was computed on
+    @param updated CompactGraph, previous with only the state or cost of edge changed
+    @param tail int, tail of the edge
+    @param edge int, index of the changed edge
+    @return the repaired tree, this tree if the change does not affect it
+     */
+    ShortestPathTree repair(CompactGraph previous, CompactGraph updated, int tail, int edge) {
+        int head = updated.destination(edge);
+        long previous_cost = edgeKey(previous, edge);
+        long updated_cost = edgeKey(updated, edge);
+        if (!isReached(tail) || previous_cost == updated_cost) {
+            return this;
+        }
+        SearchScratch scratch = SearchScratch.forCurrentThread();
+        scratch.reset(weights.length);
+        IndexedMinHeap heap = scratch.heap;
+        int[] repaired_weights;
+        int[] repaired_distances;
+        int[] repaired_parents;
+        if (updated_cost < previous_cost) {
+            long improved = key(tail) + updated_cost;
+            if (improved >= key(head)) {
+                return this;
+            }
+            repaired_weights = weights.clone();
+            repaired_distances = distances.clone();
+            repaired_parents = parents.clone();
+            repaired_weights[head] = (int) (improved >>> 32);
+            repaired_distances[head] = (int) improved;
+            repaired_parents[head] = tail;
+            heap.insertOrDecrease(head, improved);
+        } else {
+            if (parents[head] != tail || key(head) != key(tail) + previous_cost) {
+                return this;
+            }
+            repaired_weights = weights.clone();
+            repaired_distances = distances.clone();
+            repaired_parents = parents.clone();
+            int[] subtree = detachSubtree(updated, head, repaired_weights, repaired_distances, repaired_parents);
+            for (int vertex : subtree) {
+                long best = Long.MAX_VALUE;
+                int best_parent = DijkstraSearch.NO_PARENT;
+                for (int slot = updated.firstIncoming(vertex); slot < updated.endIncoming(vertex); slot++) {
+                    int incoming = updated.incomingEdge(slot);
+                    int source = updated.incomingSource(slot);
+                    if (!updated.isEnabled(incoming) || repaired_weights[source] == Integer.MAX_VALUE) {
+                        continue;
+                    }
+                    long candidate = DijkstraSearch.key(repaired_weights[source], repaired_distances[source]) + edgeKey(updated, incoming);
+                    if (candidate < best) {
+                        best = candidate;
+                        best_parent = source;
+                    }
+                }
+                if (best_parent != DijkstraSearch.NO_PARENT) {
+                    repaired_weights[vertex] = (int) (best >>> 32);
+                    repaired_distances[vertex] = (int) best;
+                    repaired_parents[vertex] = best_parent;
+                    heap.insertOrDecrease(vertex, best);
+                }
+            }
+        }
+        while (!heap.isEmpty()) {
+            long extracted_key = heap.minKey();
+            int extracted_vertex = heap.poll();
+            for (int out = updated.firstEdge(extracted_vertex); out < updated.endEdge(extracted_vertex); out++) {
+                if (!updated.isEnabled(out)) {
+                    continue;
+                }
+                int adjacent_vertex = updated.destination(out);
+                long candidate = extracted_key + edgeKey(updated, out);
+                if (repaired_weights[adjacent_vertex] == Integer.MAX_VALUE
+                        || candidate < DijkstraSearch.key(repaired_weights[adjacent_vertex], repaired_distances[adjacent_vertex])) {
+                    repaired_weights[adjacent_vertex] = (int) (candidate >>> 32);
+                    repaired_distances[adjacent_vertex] = (int) candidate;
+                    repaired_parents[adjacent_vertex] = extracted_vertex;
+                    heap.insertOrDecrease(adjacent_vertex, candidate);
+                }
+            }
+        }
+        return new ShortestPathTree(source_checkpoint, repaired_weights, repaired_distances, repaired_parents);
+    }
+    /*
+    @return approximate number of heap bytes held by the tree
+     */
+    long memoryFootprintBytes() {
+        return 3 * (16L + 4L * weights.length);
+    }
+
+    private long key(int vertex) {
+        return isReached(vertex) ? DijkstraSearch.key(weights[vertex], distances[vertex]) : Long.MAX_VALUE;
+    }
+
+    private static long edgeKey(CompactGraph graph, int edge) {
+        return graph.isEnabled(edge) ? DijkstraSearch.key(graph.weight(edge), graph.distance(edge)) : Long.MAX_VALUE;
+    }
+    /*
+    marks root and every vertex whose tree path runs through it as unreached
+    @return the detached vertices, root first
+     */
+    private static int[] detachSubtree(CompactGraph graph, int root, int[] weights, int[] distances, int[] parents) {
+        int[] subtree = new int[16];
+        int size = 0;
+        subtree[size++] = root;
+        for (int next = 0; next < size; next++) {
+            int vertex = subtree[next];
+            for (int edge = graph.firstEdge(vertex); edge < graph.endEdge(vertex); edge++) {
+                int child = graph.destination(edge);
+                if (parents[child] == vertex && child != root && weights[child] != Integer.MAX_VALUE) {
+                    if (size == subtree.length) {
+                        subtree = Arrays.copyOf(subtree, size << 1);
+                    }
+                    subtree[size++] = child;
+                    weights[child] = Integer.MAX_VALUE;
+                }
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            weights[subtree[i]] = Integer.MAX_VALUE;
+            distances[subtree[i]] = Integer.MAX_VALUE;
+            parents[subtree[i]] = DijkstraSearch.NO_PARENT;
+        }
+        return Arrays.copyOf(subtree, size);
+    }
+}
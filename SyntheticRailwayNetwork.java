@@ -0,0 +1,78 @@
+import java.util.Random;
+
+/*
+deterministic generator of railway networks shaped like the real route table
+the network is a double-track main line of TC track circuits; every few blocks the two tracks are joined by
+M switches in both directions (crossovers), and stations add a passing siding that leaves and rejoins a main
+track through switches; the generator emits route rows source -> destination, so the graphs are built by
+RouteGraphLoader exactly like the ones loaded from the database
+ */
+public final class SyntheticRailwayNetwork {
+    private static final int CROSSOVER_SPACING = 12;
+    private static final int STATION_SPACING = 60;
+    private static final int SIDING_LENGTH = 8;
+
+    private SyntheticRailwayNetwork() {
+    }
+    /*
+    receives every generated route row
+     */
+    public interface RouteSink {
+        void accept(String source, String destination);
+    }
+    /*
+    @param target_vertices int, approximate number of checkpoints, at least 100
+    @param seed long, the same seed always yields the same network
+    @return the generated network
+     */
+    public static RailwayNetwork generate(int target_vertices, long seed) {
+        RouteGraphLoader loader = new RouteGraphLoader();
+        generateRoutes(target_vertices, seed, loader::addRoute);
+        return loader.build();
+    }
+    /*
+    emits the route rows of the network
+    @param target_vertices int, approximate number of checkpoints, at least 100
+    @param seed long, the same seed always yields the same rows in the same order
+    @param sink RouteSink, receives the rows
+    @throws IllegalArgumentException if {@code target_vertices < 100}
+     */
+    public static void generateRoutes(int target_vertices, long seed, RouteSink sink) throws IllegalArgumentException {
+        if (target_vertices < 100) {
+            throw new IllegalArgumentException("a synthetic network needs at least 100 checkpoints");
+        }
+        Random random = new Random(seed);
+        int blocks = target_vertices * 5 / 12;
+        int next_switch = 0;
+        int next_siding = 0;
+        for (int block = 0; block + 1 < blocks; block++) {
+            sink.accept(track('A', block), track('A', block + 1));
+            sink.accept(track('B', block), track('B', block + 1));
+            if (block % CROSSOVER_SPACING == CROSSOVER_SPACING - 1 || random.nextInt(CROSSOVER_SPACING * 4) == 0) {
+                String from_a = "M" + next_switch++;
+                String from_b = "M" + next_switch++;
+                sink.accept(track('A', block), from_a);
+                sink.accept(from_a, track('B', block + 1));
+                sink.accept(track('B', block), from_b);
+                sink.accept(from_b, track('A', block + 1));
+            }
+            if (block % STATION_SPACING == STATION_SPACING / 2 && block + SIDING_LENGTH < blocks) {
+                char main_track = random.nextBoolean() ? 'A' : 'B';
+                String entry_switch = "M" + next_switch++;
+                String exit_switch = "M" + next_switch++;
+                int siding = next_siding++;
+                sink.accept(track(main_track, block), entry_switch);
+                sink.accept(entry_switch, "TC" + "S" + siding + "_0");
+                for (int i = 0; i + 1 < SIDING_LENGTH; i++) {
+                    sink.accept("TC" + "S" + siding + "_" + i, "TC" + "S" + siding + "_" + (i + 1));
+                }
+                sink.accept("TC" + "S" + siding + "_" + (SIDING_LENGTH - 1), exit_switch);
+                sink.accept(exit_switch, track(main_track, block + SIDING_LENGTH));
+            }
+        }
+    }
+
+    private static String track(char main_track, int block) {
+        return "TC" + main_track + block;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+minute-of-day time model of the route search
+times are carried as int minutes since midnight of the departure day; values of 1440 and more lie on the following
+days, so arrival times stay ordered across midnight and are only wrapped to "HH:MM" when a result is rendered
+ */
+public final class TrainClock {
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final int UNKNOWN = -1;
+
+    private TrainClock() {
+    }
+    /*
+    parses a clock time in xx:xx format
+    @param clock String, hours 00-23 and minutes 00-59 separated by ':'
+    @return minutes since midnight
+    @throws IllegalArgumentException if {@code clock} is not a valid time in xx:xx format
+     */
+    public static int parse(String clock) throws IllegalArgumentException {
+        if (clock == null || clock.length() != 5 || clock.charAt(2) != ':') {
+            throw new IllegalArgumentException("time is not in xx:xx format: " + clock);
+        }
+        int hours = digits(clock, 0);
+        int minutes = digits(clock, 3);
+        if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59) {
+            throw new IllegalArgumentException("time is not in xx:xx format: " + clock);
+        }
+        return hours * 60 + minutes;
+    }
+    /*
+    formats a minute as clock time, wrapping over midnight
+    @param minute int, minutes since midnight of the departure day, UNKNOWN if the time is not known
+    @return the clock time in xx:xx format, "xx:xx" for UNKNOWN
+     */
+    public static String format(int minute) {
+        if (minute == UNKNOWN) {
+            return "xx:xx";
+        }
+        int minute_of_day = Math.floorMod(minute, MINUTES_PER_DAY);
+        int hours = minute_of_day / 60;
+        int minutes = minute_of_day % 60;
+        char[] clock = {(char) ('0' + hours / 10), (char) ('0' + hours % 10), ':', (char) ('0' + minutes / 10), (char) ('0' + minutes % 10)};
+        return new String(clock);
+    }
+    /*
+    @param minute int, minutes since midnight of the departure day
+    @return number of midnights passed since departure day, 0 on the departure day itself
+     */
+    public static int dayOffset(int minute) {
+        return Math.floorDiv(minute, MINUTES_PER_DAY);
+    }
+
+    private static int digits(String clock, int index) {
+        char tens = clock.charAt(index);
+        char ones = clock.charAt(index + 1);
+        if (tens < '0' || tens > '9' || ones < '0' || ones > '9') {
+            return -1;
+        }
+        return (tens - '0') * 10 + (ones - '0');
+    }
+}
@@ -0,0 +1,22 @@
+/*
+direction of travel of a train, each direction is routed on its own graph of the railway network
+ */
+public enum TrainDirection {
+    RIGHT,
+    LEFT;
+    /*
+    parses the direction as typed at the prompt
+    @param input String, "right" or "left"
+    @return the matching direction
+    @throws IllegalArgumentException if {@code !input.equals("right") && !input.equals("left")}
+     */
+    public static TrainDirection fromInput(String input) throws IllegalArgumentException {
+        if ("right".equals(input)) {
+            return RIGHT;
+        }
+        if ("left".equals(input)) {
+            return LEFT;
+        }
+        throw new IllegalArgumentException("unknown train direction " + input);
+    }
+}
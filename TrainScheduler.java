@@ -0,0 +1,285 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+conflict-free routing of many trains over one RailwayNetwork
+a train occupies a checkpoint from the minute it arrives there until clearance_minutes after it has arrived at the
+next checkpoint, so two trains are never on the same track circuit or switch at once; the travel minutes of an
+edge follow from its distance and TRAIN_VELOCITY as in the single train search
+a route is found by a time-dependent Dijkstra over (checkpoint, safe interval) states keyed on the arrival minute,
+which is safe interval path planning: arriving earlier within a safe interval is never worse because the train
+can wait there, so one label per safe interval is enough; the train waits at a checkpoint or takes another path
+whenever the direct one is occupied, and it may wait before entering the network at its source
+schedule reserves the found route in the OccupancyIndex, so later trains of a batch route around it; instances
+are not thread-safe, a batch is scheduled on one thread in priority order
+ */
+public final class TrainScheduler {
+    public static final int DEFAULT_CLEARANCE_MINUTES = 1;
+    private static final int NO_STATE = -1;
+    private final RailwayNetwork network;
+    private final int clearance_minutes;
+    private final OccupancyIndex occupancy;
+    private final States states = new States();
+
+    public TrainScheduler(RailwayNetwork network) {
+        this(network, DEFAULT_CLEARANCE_MINUTES);
+    }
+    /*
+    @param network RailwayNetwork, the network the trains run on
+    @param clearance_minutes int, minutes a checkpoint stays blocked after the train has left it
+    @throws IllegalArgumentException if {@code clearance_minutes < 1}
+     */
+    public TrainScheduler(RailwayNetwork network, int clearance_minutes) throws IllegalArgumentException {
+        if (clearance_minutes < 1) {
+            throw new IllegalArgumentException("clearance must be at least one minute");
+        }
+        this.network = network;
+        this.clearance_minutes = clearance_minutes;
+        this.occupancy = new OccupancyIndex(network.totalVertices());
+    }
+
+    public RailwayNetwork network() {
+        return network;
+    }
+
+    public int clearanceMinutes() {
+        return clearance_minutes;
+    }
+
+    public OccupancyIndex occupancy() {
+        return occupancy;
+    }
+    /*
+    finds the earliest conflict-free arrival of a train without reserving its route
+    @param request RouteRequest, direction, source, destination and earliest departure minute of the train
+    @return the route with the arrival minute at every checkpoint, waiting included; RouteResult.isFound() == false
+            if the destination cannot be reached; the weights are those of the edges taken
+    @throws IllegalArgumentException if source or destination is not a checkpoint of the network
+     */
+    public RouteResult route(RouteRequest request) throws IllegalArgumentException {
+        checkCheckpoint(request.sourceCheckpoint());
+        checkCheckpoint(request.destinationCheckpoint());
+        int goal = search(network.graph(request.direction()), request.sourceCheckpoint(), request.destinationCheckpoint(),
+                request.departureMinute());
+        if (goal == NO_STATE) {
+            return new RouteResult(request, RoutePath.NOT_FOUND, new int[0]);
+        }
+        int length = 0;
+        for (int state = goal; state != NO_STATE; state = states.parent[state]) {
+            length++;
+        }
+        int[] checkpoints = new int[length];
+        int[] weights = new int[length];
+        int[] distances = new int[length];
+        int[] arrival_minutes = new int[length];
+        for (int state = goal, i = length - 1; state != NO_STATE; state = states.parent[state], i--) {
+            checkpoints[i] = states.vertex[state];
+            weights[i] = states.weight[state];
+            distances[i] = states.distance[state];
+            arrival_minutes[i] = states.arrival[state];
+        }
+        return new RouteResult(request, RoutePath.of(checkpoints, weights, distances), arrival_minutes);
+    }
+    /*
+    routes a train and reserves its route, so trains scheduled afterwards cannot conflict with it
+    @return the route, nothing is reserved if it was not found
+    @throws IllegalArgumentException if source or destination is not a checkpoint of the network
+    @modifies {@code occupancy}
+     */
+    public RouteResult schedule(RouteRequest request) throws IllegalArgumentException {
+        RouteResult route = route(request);
+        if (route.isFound()) {
+            reserve(route);
+        }
+        return route;
+    }
+    /*
+    schedules a batch of trains, earlier requests have priority over later ones
+    @param requests List<RouteRequest>, the trains in priority order
+    @return the route of every train in the order of requests
+     */
+    public List<RouteResult> scheduleAll(List<RouteRequest> requests) throws IllegalArgumentException {
+        List<RouteResult> routes = new ArrayList<>(requests.size());
+        for (RouteRequest request : requests) {
+            routes.add(schedule(request));
+        }
+        return routes;
+    }
+    /*
+    frees every checkpoint, e.g. before the batch of the next day
+     */
+    public void clear() {
+        occupancy.clear();
+    }
+
+    private int search(CompactGraph graph, int source_checkpoint, int destination_checkpoint, int departure_minute) {
+        states.reset(graph.totalVertices());
+        IndexedMinHeap heap = states.heap;
+        for (int i = occupancy.firstSafeEndingAfter(source_checkpoint, departure_minute); i <= occupancy.intervals(source_checkpoint); i++) {
+            int arrival = Math.max(departure_minute, occupancy.safeStart(source_checkpoint, i));
+            if (arrival < occupancy.safeEnd(source_checkpoint, i)) {
+                relax(source_checkpoint, i, arrival, 0, 0, NO_STATE);
+            }
+        }
+        int goal = NO_STATE;
+        int settled = 0;
+        int relaxed = 0;
+        int heap_updates = heap.size();
+        while (!heap.isEmpty()) {
+            int state = heap.poll();
+            states.settled[state] = true;
+            settled++;
+            int vertex = states.vertex[state];
+            int arrival = states.arrival[state];
+            int latest_arrival = occupancy.safeEnd(vertex, states.interval[state]) - clearance_minutes;
+            if (vertex == destination_checkpoint && arrival <= latest_arrival) {
+                goal = state;
+                break;
+            }
+            for (int edge = graph.firstEdge(vertex); edge < graph.endEdge(vertex); edge++) {
+                if (!graph.isEnabled(edge)) {
+                    continue;
+                }
+                int adjacent_vertex = graph.destination(edge);
+                int earliest_arrival = arrival
+                        + DijkstraTrainAlgorithmPQ.Graph.checkpoint_time_finder(DijkstraTrainAlgorithmPQ.TRAIN_VELOCITY, graph.distance(edge));
+                for (int i = occupancy.firstSafeEndingAfter(adjacent_vertex, earliest_arrival); i <= occupancy.intervals(adjacent_vertex); i++) {
+                    int adjacent_arrival = Math.max(earliest_arrival, occupancy.safeStart(adjacent_vertex, i));
+                    if (adjacent_arrival > latest_arrival) {
+                        break;
+                    }
+                    if (adjacent_arrival < occupancy.safeEnd(adjacent_vertex, i)) {
+                        relaxed++;
+                        if (relax(adjacent_vertex, i, adjacent_arrival, states.weight[state] + graph.weight(edge),
+                                states.distance[state] + graph.distance(edge), state)) {
+                            heap_updates++;
+                        }
+                    }
+                }
+            }
+        }
+        if (RoutingMetrics.isEnabled()) {
+            RoutingMetrics.recordSearch(settled, relaxed, heap_updates);
+        }
+        return goal;
+    }
+    /*
+    @return true if the label of (vertex, interval) improved and the state was inserted into or moved up the heap
+     */
+    private boolean relax(int vertex, int interval, int arrival, int weight, int distance, int parent) {
+        int state = states.find(vertex, interval);
+        long key = DijkstraSearch.key(arrival, weight);
+        if (state == NO_STATE) {
+            state = states.add(vertex, interval);
+        } else if (states.settled[state] || key >= DijkstraSearch.key(states.arrival[state], states.weight[state])) {
+            return false;
+        }
+        states.arrival[state] = arrival;
+        states.weight[state] = weight;
+        states.distance[state] = distance;
+        states.parent[state] = parent;
+        states.heap.insertOrDecrease(state, key);
+        return true;
+    }
+    /*
+    occupies every checkpoint of route from its arrival until clearance_minutes after the arrival at the next one
+    a checkpoint visited twice within one safe interval gets a single merged occupation
+     */
+    private void reserve(RouteResult route) {
+        int size = route.size();
+        long[] visits = new long[size];
+        for (int i = 0; i < size; i++) {
+            visits[i] = ((long) route.checkpoint(i) << 32) | i;
+        }
+        Arrays.sort(visits);
+        for (int i = 0; i < size; ) {
+            int checkpoint = (int) (visits[i] >>> 32);
+            int from = route.arrivalMinute((int) visits[i]);
+            int to = release(route, (int) visits[i]);
+            for (i++; i < size && (int) (visits[i] >>> 32) == checkpoint && route.arrivalMinute((int) visits[i]) <= to; i++) {
+                to = Math.max(to, release(route, (int) visits[i]));
+            }
+            occupancy.reserve(checkpoint, from, to);
+        }
+    }
+
+    private int release(RouteResult route, int index) {
+        return (index + 1 < route.size() ? route.arrivalMinute(index + 1) : route.arrivalMinute(index)) + clearance_minutes;
+    }
+
+    private void checkCheckpoint(int checkpoint) throws IllegalArgumentException {
+        if (checkpoint < 0 || checkpoint >= network.totalVertices()) {
+            throw new IllegalArgumentException("There is no checkpoint " + checkpoint);
+        }
+    }
+    /*
+    labels of the (checkpoint, safe interval) states discovered by one search, reused from search to search
+    the states of a vertex form a linked list starting at first[vertex], which is only valid when its stamp equals
+    the current generation
+     */
+    private static final class States {
+        private int generation;
+        private int[] stamps = new int[0];
+        private int[] first = new int[0];
+        private int size;
+        int[] vertex = new int[0];
+        int[] interval = new int[0];
+        int[] next = new int[0];
+        int[] arrival = new int[0];
+        int[] weight = new int[0];
+        int[] distance = new int[0];
+        int[] parent = new int[0];
+        boolean[] settled = new boolean[0];
+        final IndexedMinHeap heap = new IndexedMinHeap(0);
+
+        void reset(int totalVertices) {
+            heap.clear();
+            if (totalVertices > stamps.length) {
+                stamps = Arrays.copyOf(stamps, totalVertices);
+                first = new int[totalVertices];
+            }
+            generation++;
+            if (generation == Integer.MAX_VALUE) {
+                Arrays.fill(stamps, 0);
+                generation = 1;
+            }
+            size = 0;
+        }
+
+        int find(int vertex, int interval) {
+            if (stamps[vertex] != generation) {
+                return NO_STATE;
+            }
+            for (int state = first[vertex]; state != NO_STATE; state = next[state]) {
+                if (this.interval[state] == interval) {
+                    return state;
+                }
+            }
+            return NO_STATE;
+        }
+
+        int add(int vertex, int interval) {
+            if (size == this.vertex.length) {
+                int capacity = Math.max(64, size << 1);
+                this.vertex = Arrays.copyOf(this.vertex, capacity);
+                this.interval = Arrays.copyOf(this.interval, capacity);
+                next = Arrays.copyOf(next, capacity);
+                arrival = Arrays.copyOf(arrival, capacity);
+                weight = Arrays.copyOf(weight, capacity);
+                distance = Arrays.copyOf(distance, capacity);
+                parent = Arrays.copyOf(parent, capacity);
+                settled = Arrays.copyOf(settled, capacity);
+                heap.ensureCapacity(capacity);
+            }
+            int state = size++;
+            this.vertex[state] = vertex;
+            this.interval[state] = interval;
+            next[state] = stamps[vertex] == generation ? first[vertex] : NO_STATE;
+            settled[state] = false;
+            stamps[vertex] = generation;
+            first[vertex] = state;
+            return state;
+        }
+    }
+}
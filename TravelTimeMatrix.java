@@ -0,0 +1,194 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+many-to-many batch routing: travel minutes for every (source, destination) pair
+one search settles the whole graph once per source and fills a complete matrix row, and the sources are spread
+over a fork-join pool; every worker searches on its own SearchScratch, rows are streamed to a RowSink as soon as
+they are finished instead of being collected first
+ */
+public final class TravelTimeMatrix {
+    public static final int UNREACHABLE = -1;
+    private static final int SOURCES_PER_TASK = 4;
+
+    private TravelTimeMatrix() {
+    }
+    /*
+    receives finished matrix rows, it is called concurrently from the worker threads in no particular row order
+     */
+    public interface RowSink {
+        /*
+        @param row int, index of the source in the sources array
+        @param travel_minutes int[], travel minutes to every destination, UNREACHABLE where there is no route;
+               the array is only valid during the call
+         */
+        void accept(int row, int[] travel_minutes) throws IOException;
+    }
+    /*
+    throughput of a matrix computation
+     */
+    public static final class Stats {
+        private final long pairs;
+        private final long elapsed_nanos;
+
+        Stats(long pairs, long elapsed_nanos) {
+            this.pairs = pairs;
+            this.elapsed_nanos = elapsed_nanos;
+        }
+
+        public long pairs() {
+            return pairs;
+        }
+
+        public long elapsedNanos() {
+            return elapsed_nanos;
+        }
+
+        public double pairsPerSecond() {
+            return elapsed_nanos == 0 ? 0 : pairs * 1e9 / elapsed_nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d pairs in %.1f ms, %.0f pairs/s", pairs, elapsed_nanos / 1e6, pairsPerSecond());
+        }
+    }
+    /*
+    computes the matrix and streams every row to sink
+    @param graph CompactGraph, graph of the train direction
+    @param sources int[], vertex ids of the matrix rows
+    @param destinations int[], vertex ids of the matrix columns
+    @param pool ForkJoinPool, the workers the sources are spread over
+    @param sink RowSink, receives every row exactly once
+    @return the throughput of the computation
+    @throws IOException if sink fails, the remaining rows are abandoned
+     */
+    public static Stats compute(CompactGraph graph, int[] sources, int[] destinations, ForkJoinPool pool, RowSink sink) throws IOException {
+        long start = System.nanoTime();
+        try {
+            pool.invoke(new RowTask(graph, sources, destinations, sink, 0, sources.length));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return new Stats((long) sources.length * destinations.length, System.nanoTime() - start);
+    }
+    /*
+    computes the whole matrix in memory
+    @return travel minutes, {@code matrix[i][j]} from sources[i] to destinations[j], UNREACHABLE where there is no route
+     */
+    public static int[][] compute(CompactGraph graph, int[] sources, int[] destinations, ForkJoinPool pool) {
+        int[][] matrix = new int[sources.length][];
+        try {
+            compute(graph, sources, destinations, pool, (row, travel_minutes) -> matrix[row] = travel_minutes.clone());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return matrix;
+    }
+    /*
+    resolves checkpoint labels to vertex ids
+    @throws IllegalArgumentException if a label is not a checkpoint of the network
+     */
+    public static int[] checkpoints(RailwayNetwork network, List<String> labels) throws IllegalArgumentException {
+        int[] checkpoints = new int[labels.size()];
+        for (int i = 0; i < checkpoints.length; i++) {
+            checkpoints[i] = network.checkpointId(labels.get(i));
+            if (checkpoints[i] < 0) {
+                throw new IllegalArgumentException("There is no checkpoint " + labels.get(i));
+            }
+        }
+        return checkpoints;
+    }
+    /*
+    sink writing CSV: a header "source,<destination labels>" followed by one line per finished row
+    @param out Writer, the CSV destination, it is not closed
+     */
+    public static RowSink csv(Writer out, List<String> vertex_labels, int[] sources, int[] destinations) throws IOException {
+        StringBuilder header = new StringBuilder("source");
+        for (int destination : destinations) {
+            header.append(',').append(vertex_labels.get(destination));
+        }
+        out.write(header.append('\n').toString());
+        return (row, travel_minutes) -> {
+            StringBuilder line = new StringBuilder(vertex_labels.get(sources[row]));
+            for (int travel_minute : travel_minutes) {
+                line.append(',');
+                if (travel_minute != UNREACHABLE) {
+                    line.append(travel_minute);
+                }
+            }
+            line.append('\n');
+            synchronized (out) {
+                out.write(line.toString());
+            }
+        };
+    }
+    /*
+    sink writing big-endian binary: int row count, int column count, int[] destination ids, then per finished row
+    int source id followed by int[] travel minutes
+    @param out DataOutputStream, the binary destination, it is not closed
+     */
+    public static RowSink binary(DataOutputStream out, int[] sources, int[] destinations) throws IOException {
+        out.writeInt(sources.length);
+        out.writeInt(destinations.length);
+        for (int destination : destinations) {
+            out.writeInt(destination);
+        }
+        return (row, travel_minutes) -> {
+            synchronized (out) {
+                out.writeInt(sources[row]);
+                for (int travel_minute : travel_minutes) {
+                    out.writeInt(travel_minute);
+                }
+            }
+        };
+    }
+
+    private static final class RowTask extends RecursiveAction {
+        private final CompactGraph graph;
+        private final int[] sources;
+        private final int[] destinations;
+        private final RowSink sink;
+        private final int from;
+        private final int to;
+
+        RowTask(CompactGraph graph, int[] sources, int[] destinations, RowSink sink, int from, int to) {
+            this.graph = graph;
+            this.sources = sources;
+            this.destinations = destinations;
+            this.sink = sink;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SOURCES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RowTask(graph, sources, destinations, sink, from, middle),
+                        new RowTask(graph, sources, destinations, sink, middle, to));
+                return;
+            }
+            int[] travel_minutes = new int[destinations.length];
+            for (int row = from; row < to; row++) {
+                SearchScratch scratch = DijkstraSearch.search(graph, sources[row], DijkstraSearch.NO_TARGET);
+                for (int column = 0; column < destinations.length; column++) {
+                    int destination = destinations[column];
+                    travel_minutes[column] = scratch.isReached(destination)
+                            ? DijkstraTrainAlgorithmPQ.Graph.checkpoint_time_finder(DijkstraTrainAlgorithmPQ.TRAIN_VELOCITY, scratch.distance(destination))
+                            : UNREACHABLE;
+                }
+                try {
+                    sink.accept(row, travel_minutes);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+}
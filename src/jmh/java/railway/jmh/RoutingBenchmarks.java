@@ -0,0 +1,131 @@
+package railway.jmh;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+JMH benchmarks of the routing hot paths on the synthetic networks of 1k to 100k checkpoints; the 1M checkpoint
+networks take hours over all workloads and are opt-in with -p checkpoints=1000000, or e.g. -p checkpoints=100000,1000000
+the workloads are built by RoutingBenchmark in the default package, which JMH cannot generate code for and which
+this package cannot name, so every state looks its workload up reflectively once per trial; the measured call is
+a monomorphic IntToLongFunction call
+the jmh profile of the build runs them with -prof gc for the allocation rate per operation
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class RoutingBenchmarks {
+    // queries per queryAll invocation, RoutingBenchmark.QUERY_PAIRS
+    static final int QUERY_BATCH = 1024;
+    // pairs per matrix invocation, RoutingBenchmark.MATRIX_SOURCES * MATRIX_DESTINATIONS
+    static final int MATRIX_PAIRS = 64 * 500;
+
+    @State(Scope.Thread)
+    public static class Routing {
+        @Param({"construction.generator", "construction.createEdge", "query.oneToOne", "query.oneToAll",
+                "path.reconstruction", "path.arrivalClock", "hierarchy.build", "hierarchy.query", "update.closure.repair", "update.reopening.repair",
+                "update.recompute", "schedule.train"})
+        public String name;
+
+        @Param({"1000", "10000", "100000"})
+        public int checkpoints;
+
+        IntToLongFunction workload;
+        int invocation;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            workload = (IntToLongFunction) workload("workload", new Class<?>[]{String.class, int.class}, name, checkpoints);
+        }
+    }
+
+    @Benchmark
+    public long routing(Routing state) {
+        return state.workload.applyAsLong(state.invocation++);
+    }
+    @State(Scope.Benchmark)
+    public static class QueryAll {
+        @Param({"100000"})
+        public int checkpoints;
+
+        @Param({"1", "2", "4", "8"})
+        public int threads;
+
+        IntToLongFunction workload;
+        int invocation;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            workload = (IntToLongFunction) workload("queryAllWorkload", new Class<?>[]{int.class, int.class}, checkpoints, threads);
+        }
+    }
+    /*
+    RouteQueryEngine.queryAll of QUERY_BATCH queries on a pool of the given number of threads, the score is in
+    queries per second; run with -p threads=1,2,4,...,N for the cores of the machine
+    near-linear scaling is expected, queries share only immutable graphs and keep their scratch per thread, but it has
+    not been shown: so far the benchmark only ran on a single core, where 1 and 2 threads give the same throughput
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(QUERY_BATCH)
+    public long queryAll(QueryAll state) {
+        return state.workload.applyAsLong(state.invocation++);
+    }
+    @State(Scope.Benchmark)
+    public static class Matrix {
+        @Param({"100000"})
+        public int checkpoints;
+
+        IntToLongFunction workload;
+        int invocation;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            workload = (IntToLongFunction) workload("matrixWorkload", new Class<?>[]{int.class}, checkpoints);
+        }
+    }
+    /*
+    TravelTimeMatrix of 64 sources by 500 destinations, the score is in origin-destination pairs per second; run with
+    -p checkpoints=100000,1000000 for the 1M checkpoint network as well
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(MATRIX_PAIRS)
+    public long matrix(Matrix state) {
+        return state.workload.applyAsLong(state.invocation++);
+    }
+    /*
+    calls the public static factory method of RoutingBenchmark
+     */
+    static Object workload(String method, Class<?>[] parameter_types, Object... arguments) {
+        try {
+            return Class.forName("RoutingBenchmark").getMethod(method, parameter_types).invoke(null, arguments);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("RoutingBenchmark." + method + " is not on the class path", e);
+        }
+    }
+}
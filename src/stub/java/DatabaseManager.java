@@ -0,0 +1,29 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/*
+build stand-in for the DatabaseManager of the ROUTE database, which is kept outside the repository
+it is only compiled while no DatabaseManager.java lies next to the sources, see pom.xml
+ */
+public final class DatabaseManager {
+    private static final DatabaseManager INSTANCE = new DatabaseManager();
+
+    private DatabaseManager() {
+    }
+
+    public static DatabaseManager getInstance() {
+        return INSTANCE;
+    }
+    /*
+    @return a connection to the JDBC URL of the system property railway.db.url
+    @throws SQLException if the property is not set or the database cannot be reached
+     */
+    public Connection getConnection() throws SQLException {
+        String url = System.getProperty("railway.db.url");
+        if (url == null) {
+            throw new SQLException("no ROUTE database configured, run with -Drailway.db.url=<jdbc url>");
+        }
+        return DriverManager.getConnection(url);
+    }
+}
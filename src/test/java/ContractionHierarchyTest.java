@@ -0,0 +1,24 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ContractionHierarchy.crossCheck on synthetic networks: every hierarchy query must cost what DijkstraSearch costs
+ */
+class ContractionHierarchyTest {
+    private static final long SEED = 20_240_601L;
+    private static final int PAIRS = 2000;
+
+    @Test
+    void hierarchyCostsMatchDijkstraInBothDirections() {
+        for (int checkpoints : new int[]{500, 5000}) {
+            RailwayNetwork network = SyntheticRailwayNetwork.generate(checkpoints, SEED);
+            for (TrainDirection direction : TrainDirection.values()) {
+                CompactGraph graph = network.graph(direction);
+                ContractionHierarchy.CrossCheck check = ContractionHierarchy.build(graph).crossCheck(graph, PAIRS, SEED + checkpoints);
+                assertEquals(0, check.cost_mismatches, checkpoints + " checkpoints " + direction + ": " + check);
+                assertEquals(PAIRS, check.pairs);
+            }
+        }
+    }
+}
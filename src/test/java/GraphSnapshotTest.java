@@ -0,0 +1,156 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/*
+GraphSnapshot round trips of networks with class-coded and with per-edge costs, and the cases in which loadOrRebuild
+rebuilds the network instead of reading the snapshot
+ */
+class GraphSnapshotTest {
+    private static final long SEED = 20_240_601L;
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripKeepsTopologyCostsAndPairing() throws IOException {
+        RailwayNetwork network = SyntheticRailwayNetwork.generate(2000, SEED);
+        int[] edge = firstEdge(network, TrainDirection.LEFT);
+        network = network.withEdgeEnabled(TrainDirection.LEFT, edge[0], edge[1], false);
+        RailwayNetwork read = roundTrip(network);
+        assertSameNetwork(network, read);
+        assertTrue(read.graph(TrainDirection.LEFT).isTransposeOf(read.graph(TrainDirection.RIGHT)));
+    }
+
+    @Test
+    void moreThan256CostsFallBackToPerEdgeCosts() throws IOException {
+        RailwayNetwork network = SyntheticRailwayNetwork.generate(2000, SEED);
+        CompactGraph graph = network.graph(TrainDirection.RIGHT);
+        int reweighted = 0;
+        for (int source = 0; reweighted < 2 * CompactGraph.MAX_COST_CLASSES; source++) {
+            if (graph.firstEdge(source) < graph.endEdge(source)) {
+                int head = graph.destination(graph.firstEdge(source));
+                network = network.withEdgeCost(TrainDirection.RIGHT, source, head, 100 + reweighted, 1000 + reweighted);
+                reweighted++;
+            }
+        }
+        graph = network.graph(TrainDirection.RIGHT);
+        assertEquals(0, graph.totalCostClasses());
+        assertTrue(graph.isTransposeOf(network.graph(TrainDirection.LEFT)));
+        int[] edge = firstEdge(network, TrainDirection.RIGHT);
+        network = network.withEdgeEnabled(TrainDirection.RIGHT, edge[0], edge[1], false);
+        assertFalse(network.graph(TrainDirection.RIGHT).isEnabled(network.graph(TrainDirection.RIGHT).firstEdge(edge[0])));
+        assertSameNetwork(network, roundTrip(network));
+    }
+
+    @Test
+    void rejectsAnotherVersion() throws IOException {
+        Path snapshot = directory.resolve("railway.snapshot");
+        GraphSnapshot.write(SyntheticRailwayNetwork.generate(100, SEED), 0, snapshot);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[7] = (byte) (GraphSnapshot.VERSION - 1);
+        Files.write(snapshot, bytes, StandardOpenOption.TRUNCATE_EXISTING);
+        assertThrows(IOException.class, () -> GraphSnapshot.read(snapshot));
+    }
+
+    @Test
+    void corruptSnapshotIsRebuilt() throws IOException, SQLException {
+        Path snapshot = directory.resolve("railway.snapshot");
+        RailwayNetwork network = SyntheticRailwayNetwork.generate(500, SEED);
+        GraphSnapshot.write(network, 7, snapshot);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(snapshot, bytes, StandardOpenOption.TRUNCATE_EXISTING);
+        assertThrows(IOException.class, () -> GraphSnapshot.read(snapshot));
+        assertSame(network, GraphSnapshot.loadOrRebuild(snapshot, () -> 7, () -> network));
+        assertSameNetwork(network, GraphSnapshot.read(snapshot));
+    }
+
+    @Test
+    void snapshotOfTheSameRouteTableIsRead() throws IOException, SQLException {
+        Path snapshot = directory.resolve("railway.snapshot");
+        RailwayNetwork network = SyntheticRailwayNetwork.generate(500, SEED);
+        GraphSnapshot.write(network, 7, snapshot);
+        RailwayNetwork read = GraphSnapshot.loadOrRebuild(snapshot, () -> 7, () -> {
+            throw new SQLException("the snapshot is current");
+        });
+        assertSameNetwork(network, read);
+        read = GraphSnapshot.loadOrRebuild(snapshot, () -> {
+            throw new SQLException("no database");
+        }, () -> {
+            throw new SQLException("the snapshot is served unchecked");
+        });
+        assertSameNetwork(network, read);
+    }
+
+    @Test
+    void changedRouteTableIsRebuilt() throws IOException, SQLException {
+        Path snapshot = directory.resolve("railway.snapshot");
+        GraphSnapshot.write(SyntheticRailwayNetwork.generate(100, SEED), 7, snapshot);
+        RailwayNetwork changed = SyntheticRailwayNetwork.generate(500, SEED);
+        assertSame(changed, GraphSnapshot.loadOrRebuild(snapshot, () -> 8, () -> changed));
+        assertEquals(8, GraphSnapshot.fingerprint(snapshot));
+        assertSameNetwork(changed, GraphSnapshot.read(snapshot));
+    }
+
+    @Test
+    void rebuildCanBeForced() throws IOException, SQLException {
+        Path snapshot = directory.resolve("railway.snapshot");
+        GraphSnapshot.write(SyntheticRailwayNetwork.generate(100, SEED), 7, snapshot);
+        RailwayNetwork rebuilt = SyntheticRailwayNetwork.generate(500, SEED);
+        System.setProperty(GraphSnapshot.REBUILD_PROPERTY, "true");
+        try {
+            assertSame(rebuilt, GraphSnapshot.loadOrRebuild(snapshot, () -> 7, () -> rebuilt));
+        } finally {
+            System.clearProperty(GraphSnapshot.REBUILD_PROPERTY);
+        }
+        assertSameNetwork(rebuilt, GraphSnapshot.read(snapshot));
+    }
+
+    private RailwayNetwork roundTrip(RailwayNetwork network) throws IOException {
+        Path snapshot = directory.resolve("railway.snapshot");
+        GraphSnapshot.write(network, 0, snapshot);
+        return GraphSnapshot.read(snapshot);
+    }
+
+    /*
+    @return source and head of the first edge of the graph
+     */
+    private static int[] firstEdge(RailwayNetwork network, TrainDirection direction) {
+        CompactGraph graph = network.graph(direction);
+        int source = 0;
+        while (graph.firstEdge(source) == graph.endEdge(source)) {
+            source++;
+        }
+        return new int[]{source, graph.destination(graph.firstEdge(source))};
+    }
+
+    private static void assertSameNetwork(RailwayNetwork expected, RailwayNetwork actual) {
+        assertEquals(expected.vertexLabels(), actual.vertexLabels());
+        for (TrainDirection direction : TrainDirection.values()) {
+            CompactGraph expected_graph = expected.graph(direction);
+            CompactGraph actual_graph = actual.graph(direction);
+            assertEquals(expected_graph.totalEdges(), actual_graph.totalEdges());
+            assertEquals(expected_graph.totalCostClasses(), actual_graph.totalCostClasses());
+            for (int v = 0; v < expected_graph.totalVertices(); v++) {
+                assertEquals(expected_graph.firstEdge(v), actual_graph.firstEdge(v));
+            }
+            for (int e = 0; e < expected_graph.totalEdges(); e++) {
+                assertEquals(expected_graph.destination(e), actual_graph.destination(e));
+                assertEquals(expected_graph.weight(e), actual_graph.weight(e));
+                assertEquals(expected_graph.distance(e), actual_graph.distance(e));
+                assertEquals(expected_graph.isEnabled(e), actual_graph.isEnabled(e));
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+/*
+KShortestPaths.find on a small grid, whose loopless paths are enumerated exhaustively, and on a synthetic network
+the grid has rows of tracks and switches connected both ways and columns running downwards, so it has cycles and
+many paths of equal cost
+ */
+class KShortestPathsTest {
+    private static final long SEED = 20_240_617L;
+    private static final int ROWS = 4;
+    private static final int COLUMNS = 5;
+    private static final int K = 12;
+
+    @Test
+    void gridPathsAreTheCheapestLooplessPaths() throws InterruptedException {
+        RailwayNetwork grid = grid();
+        CompactGraph graph = grid.graph(TrainDirection.RIGHT);
+        int source = grid.checkpointId(label(0, 0));
+        int destination = grid.checkpointId(label(ROWS - 1, COLUMNS - 1));
+        List<Long> all_keys = new ArrayList<>();
+        enumerate(graph, source, destination, new boolean[graph.totalVertices()], 0, 0, all_keys);
+        all_keys.sort(null);
+        assertTrue(all_keys.size() > K, "the grid has too few paths");
+        List<RoutePath> paths = KShortestPaths.find(graph, source, destination, K, KShortestPaths.DEFAULT_MAX_BYTES, null);
+        assertValidPaths(graph, source, destination, K, paths);
+        for (int i = 0; i < K; i++) {
+            assertEquals(all_keys.get(i), key(paths.get(i)), "path " + i);
+        }
+        List<RoutePath> all = KShortestPaths.find(graph, source, destination, all_keys.size() + 5, KShortestPaths.DEFAULT_MAX_BYTES, null);
+        assertEquals(all_keys.size(), all.size(), "every loopless path is found once and no more");
+    }
+
+    @Test
+    void syntheticPathsAreLooplessDistinctAndOrdered() throws InterruptedException {
+        RailwayNetwork network = SyntheticRailwayNetwork.generate(3000, SEED);
+        Random random = new Random(SEED);
+        for (int query = 0; query < 20; query++) {
+            TrainDirection direction = random.nextBoolean() ? TrainDirection.RIGHT : TrainDirection.LEFT;
+            CompactGraph graph = network.graph(direction);
+            int source = random.nextInt(graph.totalVertices());
+            int destination = random.nextInt(graph.totalVertices());
+            List<RoutePath> paths = KShortestPaths.find(graph, source, destination, K, KShortestPaths.DEFAULT_MAX_BYTES, null);
+            RoutePath shortest = RoutePath.fromSearch(DijkstraSearch.search(graph, source, destination), destination);
+            if (!shortest.isFound()) {
+                assertTrue(paths.isEmpty());
+                continue;
+            }
+            assertValidPaths(graph, source, destination, K, paths);
+            assertTrue(shortest.sameCheckpoints(paths.get(0)), "the first path is the shortest path");
+            assertEquals(key(shortest), key(paths.get(0)));
+        }
+    }
+
+    @Test
+    void kIsRespected() throws InterruptedException {
+        RailwayNetwork grid = grid();
+        int source = grid.checkpointId(label(0, 0));
+        int destination = grid.checkpointId(label(ROWS - 1, COLUMNS - 1));
+        for (int k = 1; k <= K; k++) {
+            List<RoutePath> paths = KShortestPaths.find(grid.graph(TrainDirection.RIGHT), source, destination, k,
+                    KShortestPaths.DEFAULT_MAX_BYTES, null);
+            assertEquals(k, paths.size());
+        }
+    }
+
+    @Test
+    void smallBudgetTruncatesTheResult() throws InterruptedException {
+        RailwayNetwork network = SyntheticRailwayNetwork.generate(3000, SEED);
+        CompactGraph graph = network.graph(TrainDirection.RIGHT);
+        int[] pair = connectedPair(graph, new Random(SEED));
+        List<RoutePath> unlimited = KShortestPaths.find(graph, pair[0], pair[1], K, KShortestPaths.DEFAULT_MAX_BYTES, null);
+        assertEquals(K, unlimited.size());
+        List<RoutePath> shortest_only = KShortestPaths.find(graph, pair[0], pair[1], K, 1, null);
+        assertEquals(1, shortest_only.size());
+        assertTrue(shortest_only.get(0).sameCheckpoints(unlimited.get(0)));
+        long budget = 3 * KShortestPaths.footprintBytes(unlimited.get(0).size());
+        List<RoutePath> truncated = KShortestPaths.find(graph, pair[0], pair[1], K, budget, null);
+        assertTrue(truncated.size() >= 1 && truncated.size() < K, "truncated to " + truncated.size());
+        for (int i = 0; i < truncated.size(); i++) {
+            assertEquals(key(unlimited.get(i)), key(truncated.get(i)), "the truncated paths are still the shortest ones");
+        }
+    }
+
+    @Test
+    void pooledSearchEqualsSerialSearch() throws InterruptedException {
+        RailwayNetwork network = SyntheticRailwayNetwork.generate(3000, SEED);
+        Random random = new Random(SEED + 1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            for (int query = 0; query < 20; query++) {
+                CompactGraph graph = network.graph(random.nextBoolean() ? TrainDirection.RIGHT : TrainDirection.LEFT);
+                int[] pair = connectedPair(graph, random);
+                for (long max_bytes : new long[]{KShortestPaths.DEFAULT_MAX_BYTES, 4 * KShortestPaths.footprintBytes(40)}) {
+                    List<RoutePath> serial = KShortestPaths.find(graph, pair[0], pair[1], K, max_bytes, null);
+                    List<RoutePath> pooled = KShortestPaths.find(graph, pair[0], pair[1], K, max_bytes, pool);
+                    assertEquals(serial.size(), pooled.size(), "query " + query);
+                    for (int i = 0; i < serial.size(); i++) {
+                        assertTrue(serial.get(i).sameCheckpoints(pooled.get(i)), "query " + query + ", path " + i);
+                        assertEquals(key(serial.get(i)), key(pooled.get(i)), "query " + query + ", path " + i);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+    /*
+    asserts that paths holds at most k distinct loopless paths source -> destination along enabled edges, ordered by
+    weight and then distance, with weights and distances summed along the edges
+     */
+    private static void assertValidPaths(CompactGraph graph, int source, int destination, int k, List<RoutePath> paths) {
+        assertFalse(paths.isEmpty());
+        assertTrue(paths.size() <= k);
+        Set<String> distinct = new HashSet<>();
+        for (int p = 0; p < paths.size(); p++) {
+            RoutePath path = paths.get(p);
+            int[] checkpoints = new int[path.size()];
+            Set<Integer> visited = new HashSet<>();
+            for (int i = 0; i < path.size(); i++) {
+                checkpoints[i] = path.checkpoint(i);
+                assertTrue(visited.add(path.checkpoint(i)), "path " + p + " visits " + path.checkpoint(i) + " twice");
+            }
+            assertTrue(distinct.add(Arrays.toString(checkpoints)), "path " + p + " was found before");
+            assertEquals(source, path.checkpoint(0));
+            assertEquals(destination, path.checkpoint(path.size() - 1));
+            assertArrayEquals(new int[]{0, 0}, new int[]{path.weight(0), path.distance(0)});
+            for (int i = 0; i + 1 < path.size(); i++) {
+                boolean edge_found = false;
+                for (int edge = graph.firstEdge(path.checkpoint(i)); edge < graph.endEdge(path.checkpoint(i)) && !edge_found; edge++) {
+                    edge_found = graph.isEnabled(edge) && graph.destination(edge) == path.checkpoint(i + 1)
+                            && path.weight(i) + graph.weight(edge) == path.weight(i + 1)
+                            && path.distance(i) + graph.distance(edge) == path.distance(i + 1);
+                }
+                assertTrue(edge_found, "path " + p + " has no edge " + path.checkpoint(i) + " -> " + path.checkpoint(i + 1));
+            }
+            if (p > 0) {
+                assertTrue(key(paths.get(p - 1)) <= key(path), "path " + p + " is cheaper than path " + (p - 1));
+            }
+        }
+    }
+    /*
+    collects the keys of every loopless path from vertex to destination that extends the current one
+     */
+    private static void enumerate(CompactGraph graph, int vertex, int destination, boolean[] on_path, int weight, int distance,
+                                  List<Long> keys) {
+        if (vertex == destination) {
+            keys.add(DijkstraSearch.key(weight, distance));
+            return;
+        }
+        on_path[vertex] = true;
+        for (int edge = graph.firstEdge(vertex); edge < graph.endEdge(vertex); edge++) {
+            if (graph.isEnabled(edge) && !on_path[graph.destination(edge)]) {
+                enumerate(graph, graph.destination(edge), destination, on_path, weight + graph.weight(edge),
+                        distance + graph.distance(edge), keys);
+            }
+        }
+        on_path[vertex] = false;
+    }
+    /*
+    @return a grid whose checkpoints are switches on every third diagonal and tracks otherwise
+     */
+    private static RailwayNetwork grid() {
+        RouteGraphLoader loader = new RouteGraphLoader();
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 0; column < COLUMNS; column++) {
+                if (column + 1 < COLUMNS) {
+                    loader.addRoute(label(row, column), label(row, column + 1));
+                    loader.addRoute(label(row, column + 1), label(row, column));
+                }
+                if (row + 1 < ROWS) {
+                    loader.addRoute(label(row, column), label(row + 1, column));
+                }
+            }
+        }
+        return loader.build();
+    }
+
+    private static String label(int row, int column) {
+        return ((row + column) % 3 == 0 ? "M" : "TC") + row + "_" + column;
+    }
+
+    private static int[] connectedPair(CompactGraph graph, Random random) {
+        while (true) {
+            int source = random.nextInt(graph.totalVertices());
+            int destination = random.nextInt(graph.totalVertices());
+            RoutePath shortest = RoutePath.fromSearch(DijkstraSearch.search(graph, source, destination), destination);
+            if (source != destination && shortest.isFound() && shortest.size() > 10) {
+                return new int[]{source, destination};
+            }
+        }
+    }
+
+    private static long key(RoutePath path) {
+        return DijkstraSearch.key(path.weight(path.size() - 1), path.distance(path.size() - 1));
+    }
+}
@@ -0,0 +1,86 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/*
+OccupancyIndex at the boundaries of its half-open intervals and for occupations that run past midnight
+ */
+class OccupancyIndexTest {
+
+    @Test
+    void intervalsAreHalfOpen() {
+        OccupancyIndex occupancy = new OccupancyIndex(2);
+        occupancy.reserve(0, 10, 20);
+        assertTrue(occupancy.isFree(0, 0, 10));
+        assertTrue(occupancy.isFree(0, 20, 30));
+        assertFalse(occupancy.isFree(0, 9, 11));
+        assertFalse(occupancy.isFree(0, 19, 21));
+        assertFalse(occupancy.isFree(0, 10, 20));
+        assertFalse(occupancy.isFree(0, 12, 13));
+        assertFalse(occupancy.isFree(0, 0, 30));
+        assertTrue(occupancy.isFree(1, 10, 20), "checkpoints are independent");
+        occupancy.reserve(0, 20, 25);
+        occupancy.reserve(0, 5, 10);
+        assertThrows(IllegalArgumentException.class, () -> occupancy.reserve(0, 19, 20));
+        assertThrows(IllegalArgumentException.class, () -> occupancy.reserve(0, 24, 26));
+        assertThrows(IllegalArgumentException.class, () -> occupancy.reserve(0, 30, 30));
+        assertEquals(3, occupancy.intervals(0));
+        assertEquals(3, occupancy.totalIntervals());
+        int[][] expected = {{5, 10}, {10, 20}, {20, 25}};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i][0], occupancy.start(0, i));
+            assertEquals(expected[i][1], occupancy.end(0, i));
+        }
+    }
+
+    @Test
+    void safeIntervalsAreTheGaps() {
+        OccupancyIndex occupancy = new OccupancyIndex(1);
+        occupancy.reserve(0, 40, 50);
+        occupancy.reserve(0, 10, 20);
+        assertEquals(0, occupancy.firstSafeEndingAfter(0, 9));
+        assertEquals(1, occupancy.firstSafeEndingAfter(0, 10));
+        assertEquals(1, occupancy.firstSafeEndingAfter(0, 20));
+        assertEquals(1, occupancy.firstSafeEndingAfter(0, 39));
+        assertEquals(2, occupancy.firstSafeEndingAfter(0, 40));
+        assertEquals(Integer.MIN_VALUE, occupancy.safeStart(0, 0));
+        assertEquals(10, occupancy.safeEnd(0, 0));
+        assertEquals(20, occupancy.safeStart(0, 1));
+        assertEquals(40, occupancy.safeEnd(0, 1));
+        assertEquals(50, occupancy.safeStart(0, 2));
+        assertEquals(Integer.MAX_VALUE, occupancy.safeEnd(0, 2));
+    }
+
+    @Test
+    void occupationsRunPastMidnight() {
+        OccupancyIndex occupancy = new OccupancyIndex(1);
+        int before_midnight = TrainClock.MINUTES_PER_DAY - 10;
+        int after_midnight = TrainClock.MINUTES_PER_DAY + 10;
+        occupancy.reserve(0, before_midnight, after_midnight);
+        assertFalse(occupancy.isFree(0, TrainClock.MINUTES_PER_DAY, TrainClock.MINUTES_PER_DAY + 1));
+        assertFalse(occupancy.isFree(0, after_midnight - 1, after_midnight));
+        assertTrue(occupancy.isFree(0, after_midnight, after_midnight + 5));
+        // minutes are not wrapped, 00:05 of the batch day is long before the occupation
+        assertTrue(occupancy.isFree(0, 5, 10));
+        assertThrows(IllegalArgumentException.class, () -> occupancy.reserve(0, TrainClock.MINUTES_PER_DAY + 5, TrainClock.MINUTES_PER_DAY + 20));
+        occupancy.reserve(0, 5, 10);
+        assertEquals(5, occupancy.start(0, 0));
+        assertEquals(before_midnight, occupancy.start(0, 1));
+    }
+
+    @Test
+    void clearFreesEveryCheckpoint() {
+        OccupancyIndex occupancy = new OccupancyIndex(3);
+        occupancy.reserve(0, 0, 10);
+        occupancy.reserve(2, 5, 15);
+        occupancy.clear();
+        assertEquals(0, occupancy.totalIntervals());
+        assertTrue(occupancy.isFree(0, 0, 10));
+        assertTrue(occupancy.isFree(2, 5, 15));
+        occupancy.reserve(2, 5, 15);
+        assertEquals(1, occupancy.intervals(2));
+    }
+}
@@ -0,0 +1,144 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/*
+RouteGraphLoader.load on a small route table of an in-memory H2 database
+the expected edges are derived from the rows with the rules the loader replaced: a rightwards train runs
+source -> destination and pays for the destination, a leftwards train runs destination -> source and pays for the
+source, and a checkpoint costs SWITCH_WEIGHT if its label starts with M, TRACK_WEIGHT if it starts with TC and is
+never entered otherwise
+ */
+class RouteGraphLoaderTest {
+    private static final String ROUTE_QUERY = "SELECT source, destination FROM route";
+    private static final String[][] ROUTES = {
+            {"M1", "TC1"}, {"TC1", "M2"}, {"M2", "TC2"}, {"TC2", "TC3"}, {"TC3", "M1"},
+            {"M2", "X1"}, {"X1", "TC3"}, {"TC1", "TC3"}, {"M3", "M1"}
+    };
+    private Connection connection;
+
+    @BeforeEach
+    void createRouteTable() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:routes");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE route (source VARCHAR(32), destination VARCHAR(32))");
+        }
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO route VALUES (?, ?)")) {
+            for (String[] route : ROUTES) {
+                insert.setString(1, route[0]);
+                insert.setString(2, route[1]);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    @AfterEach
+    void dropRouteTable() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void internsEveryLabelOnce() throws SQLException {
+        RailwayNetwork network = RouteGraphLoader.load(connection, ROUTE_QUERY);
+        Set<String> labels = new HashSet<>();
+        for (String[] route : ROUTES) {
+            labels.add(route[0]);
+            labels.add(route[1]);
+        }
+        assertEquals(labels.size(), network.totalVertices());
+        assertEquals(labels, new HashSet<>(network.vertexLabels()));
+        for (int v = 0; v < network.totalVertices(); v++) {
+            assertEquals(v, network.checkpointId(network.label(v)));
+        }
+        assertTrue(connection.getAutoCommit(), "auto-commit is restored");
+    }
+
+    @Test
+    void rightwardsEdgesCostTheDestination() throws SQLException {
+        RailwayNetwork network = RouteGraphLoader.load(connection, ROUTE_QUERY);
+        Set<String> expected = new HashSet<>();
+        for (String[] route : ROUTES) {
+            if (enterable(route[1])) {
+                expected.add(edge(route[0], route[1]));
+            }
+        }
+        assertEquals(expected, edges(network, TrainDirection.RIGHT));
+    }
+
+    @Test
+    void leftwardsEdgesCostTheSource() throws SQLException {
+        RailwayNetwork network = RouteGraphLoader.load(connection, ROUTE_QUERY);
+        Set<String> expected = new HashSet<>();
+        for (String[] route : ROUTES) {
+            if (enterable(route[0])) {
+                expected.add(edge(route[1], route[0]));
+            }
+        }
+        assertEquals(expected, edges(network, TrainDirection.LEFT));
+    }
+
+    @Test
+    void otherCheckpointsOnlyExistInOneDirection() throws SQLException {
+        RailwayNetwork network = RouteGraphLoader.load(connection, ROUTE_QUERY);
+        int m2 = network.checkpointId("M2");
+        int x1 = network.checkpointId("X1");
+        int tc3 = network.checkpointId("TC3");
+        assertEquals(-1, network.graph(TrainDirection.RIGHT).findEdge(m2, x1));
+        assertTrue(network.graph(TrainDirection.RIGHT).findEdge(x1, tc3) >= 0);
+        assertTrue(network.graph(TrainDirection.LEFT).findEdge(x1, m2) >= 0);
+        assertEquals(-1, network.graph(TrainDirection.LEFT).findEdge(tc3, x1));
+    }
+
+    @Test
+    void fingerprintIgnoresRowOrderButNotRowChanges() throws SQLException {
+        long fingerprint = RouteGraphLoader.fingerprint(connection, ROUTE_QUERY);
+        assertEquals(fingerprint, RouteGraphLoader.fingerprint(connection, ROUTE_QUERY + " ORDER BY destination DESC"));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("UPDATE route SET destination = 'TC4' WHERE source = 'TC2' AND destination = 'TC3'");
+            long updated = RouteGraphLoader.fingerprint(connection, ROUTE_QUERY);
+            assertNotEquals(fingerprint, updated);
+            statement.execute("INSERT INTO route VALUES ('TC2', 'TC3')");
+            assertNotEquals(updated, RouteGraphLoader.fingerprint(connection, ROUTE_QUERY));
+            statement.execute("DELETE FROM route WHERE source = 'TC2' AND destination = 'TC4'");
+        }
+        assertEquals(fingerprint, RouteGraphLoader.fingerprint(connection, ROUTE_QUERY));
+        assertTrue(connection.getAutoCommit(), "auto-commit is restored");
+    }
+
+    private static boolean enterable(String label) {
+        return label.startsWith("M") || label.startsWith("TC");
+    }
+    /*
+    @return source -> destination with the weight and distance of entering destination under the old rules
+     */
+    private static String edge(String source, String destination) {
+        boolean enters_switch = destination.startsWith("M");
+        return source + "->" + destination + " " + (enters_switch ? DijkstraTrainAlgorithmPQ.SWITCH_WEIGHT : DijkstraTrainAlgorithmPQ.TRACK_WEIGHT)
+                + "/" + (enters_switch ? DijkstraTrainAlgorithmPQ.SWITCH_DISTANCE : DijkstraTrainAlgorithmPQ.TRACK_DISTANCE);
+    }
+
+    private static Set<String> edges(RailwayNetwork network, TrainDirection direction) {
+        CompactGraph graph = network.graph(direction);
+        Set<String> edges = new HashSet<>();
+        for (int v = 0; v < graph.totalVertices(); v++) {
+            for (int e = graph.firstEdge(v); e < graph.endEdge(v); e++) {
+                String added = network.label(v) + "->" + network.label(graph.destination(e)) + " " + graph.weight(e) + "/" + graph.distance(e);
+                assertTrue(edges.add(added), "duplicate edge " + added);
+            }
+        }
+        return edges;
+    }
+}
@@ -0,0 +1,139 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+/*
+RouteQueryEngine.queryAll on a pool of threads against sequential queries on the calling thread, and the cached and
+hierarchy engines against a plain one after edge changes
+ */
+class RouteQueryEngineTest {
+    private static final long SEED = 20_240_601L;
+    private static final int REQUESTS = 2000;
+    private static final int THREADS = 4;
+
+    @Test
+    void concurrentQueryAllEqualsSequentialQueries() throws InterruptedException {
+        RailwayNetwork network = SyntheticRailwayNetwork.generate(5000, SEED);
+        List<RouteRequest> requests = randomRequests(network, new Random(SEED));
+        RouteQueryEngine plain = new RouteQueryEngine(network);
+        List<RouteResult> expected = new ArrayList<>(REQUESTS);
+        for (RouteRequest request : requests) {
+            expected.add(plain.query(request));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (RouteQueryEngine engine : new RouteQueryEngine[]{new RouteQueryEngine(network),
+                    new RouteQueryEngine(network).withContractionHierarchies(), new RouteQueryEngine(network).withCache(64)}) {
+                List<RouteResult> sequential = new ArrayList<>(REQUESTS);
+                for (RouteRequest request : requests) {
+                    sequential.add(engine.query(request));
+                }
+                List<RouteResult> concurrent = engine.queryAll(requests, pool);
+                assertEquals(REQUESTS, concurrent.size());
+                for (int i = 0; i < REQUESTS; i++) {
+                    RouteResult result = concurrent.get(i);
+                    assertEquals(requests.get(i), result.request());
+                    assertArrayEquals(sequential.get(i).checkpoints(), result.checkpoints(), "request " + i);
+                    assertArrayEquals(sequential.get(i).arrivalMinutes(), result.arrivalMinutes(), "request " + i);
+                    assertEquals(expected.get(i).isFound(), result.isFound(), "request " + i);
+                    if (result.isFound()) {
+                        assertEquals(expected.get(i).totalWeight(), result.totalWeight(), "request " + i);
+                        assertEquals(expected.get(i).arrivalMinute(expected.get(i).size() - 1),
+                                result.arrivalMinute(result.size() - 1), "request " + i);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void edgeChangesReachCachedTreesAndHierarchies() {
+        Random random = new Random(SEED);
+        RailwayNetwork network = SyntheticRailwayNetwork.generate(2000, SEED);
+        RouteQueryEngine plain = new RouteQueryEngine(network);
+        RouteQueryEngine cached = new RouteQueryEngine(network).withCache(64);
+        RouteQueryEngine hierarchies = new RouteQueryEngine(network).withContractionHierarchies();
+        List<RouteRequest> requests = randomRequests(network, random).subList(0, 200);
+        List<int[]> disabled = new ArrayList<>();
+        for (int change = 0; change < 40; change++) {
+            TrainDirection direction = random.nextBoolean() ? TrainDirection.RIGHT : TrainDirection.LEFT;
+            RouteResult route = plain.query(requests.get(random.nextInt(requests.size())));
+            int tail;
+            int head;
+            if (route.isFound() && route.size() > 1 && route.request().direction() == direction) {
+                // an edge on a route the cache has a tree for
+                int i = random.nextInt(route.size() - 1);
+                tail = route.checkpoint(i);
+                head = route.checkpoint(i + 1);
+            } else {
+                CompactGraph graph = plain.network().graph(direction);
+                int edge = random.nextInt(graph.totalEdges());
+                tail = 0;
+                while (graph.endEdge(tail) <= edge) {
+                    tail++;
+                }
+                head = graph.destination(edge);
+            }
+            int edge = plain.network().edge(direction, tail, head);
+            int weight = plain.network().graph(direction).weight(edge);
+            int distance = plain.network().graph(direction).distance(edge);
+            for (RouteQueryEngine engine : new RouteQueryEngine[]{plain, cached, hierarchies}) {
+                switch (change % 4) {
+                    case 0 -> engine.disableEdge(direction, tail, head);
+                    case 1 -> engine.reweightEdge(direction, tail, head, weight / 2, distance / 2);
+                    case 2 -> engine.reweightEdge(direction, tail, head, weight * 3 + 1, distance + 7);
+                    default -> {
+                        if (!disabled.isEmpty()) {
+                            int[] enabled = disabled.get(0);
+                            engine.enableEdge(enabled[0] == 0 ? TrainDirection.RIGHT : TrainDirection.LEFT, enabled[1], enabled[2]);
+                        }
+                    }
+                }
+            }
+            if (change % 4 == 0) {
+                disabled.add(new int[]{direction.ordinal(), tail, head});
+            } else if (change % 4 == 3 && !disabled.isEmpty()) {
+                disabled.remove(0);
+            }
+            // the hierarchy of the changed direction may still be rebuilding, its queries fall back to Dijkstra
+            assertSameRoutes(plain, cached, requests, "cached engine after change " + change);
+            assertSameRoutes(plain, hierarchies, requests, "hierarchy engine after change " + change);
+        }
+        hierarchies.hierarchiesBuilt().join();
+        assertSameRoutes(plain, hierarchies, requests, "rebuilt hierarchies");
+        assertTrue(cached.cache().repairs() > 0, "no cached tree was repaired");
+    }
+
+    private static void assertSameRoutes(RouteQueryEngine expected_engine, RouteQueryEngine engine, List<RouteRequest> requests,
+            String message) {
+        for (RouteRequest request : requests) {
+            RouteResult expected = expected_engine.query(request);
+            RouteResult result = engine.query(request);
+            assertEquals(expected.isFound(), result.isFound(), message + ", " + request);
+            if (result.isFound()) {
+                assertEquals(expected.totalWeight(), result.totalWeight(), message + ", " + request);
+                assertEquals(expected.arrivalMinute(expected.size() - 1), result.arrivalMinute(result.size() - 1), message + ", " + request);
+            }
+        }
+    }
+
+    private static List<RouteRequest> randomRequests(RailwayNetwork network, Random random) {
+        List<RouteRequest> requests = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            // few sources, so the cached engine answers most requests from trees shared between threads
+            requests.add(new RouteRequest(random.nextBoolean() ? TrainDirection.RIGHT : TrainDirection.LEFT,
+                    random.nextInt(32), random.nextInt(network.totalVertices()), random.nextInt(TrainClock.MINUTES_PER_DAY)));
+        }
+        return requests;
+    }
+}
@@ -0,0 +1,209 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/*
+RoutingServer on a free port, answering a synthetic network
+the expected answers are written out in the documented JSON form from RouteQueryEngine.query on the same network
+ */
+class RoutingServerTest {
+    private static final long SEED = 20_240_615L;
+    private static final int CHECKPOINTS = 20_000;
+    private static final int CONCURRENT_REQUESTS = 64;
+    private static final int ATTEMPTS = 20;
+    private RailwayNetwork network;
+    private RouteQueryEngine engine;
+    private RoutingServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        network = SyntheticRailwayNetwork.generate(CHECKPOINTS, SEED);
+        engine = new RouteQueryEngine(network);
+        server = new RoutingServer(engine, new InetSocketAddress(0));
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void stopServer() {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    void routeEqualsEngineQuery() throws IOException, InterruptedException {
+        Random random = new Random(SEED);
+        for (int i = 0; i < 20; i++) {
+            RouteRequest request = randomRequest(random);
+            HttpResponse<String> response = get(routeQuery(request));
+            assertEquals(200, response.statusCode(), response.body());
+            assertEquals(expectedJson(engine.query(request)), response.body());
+        }
+    }
+
+    @Test
+    void badInputIsAnswered400() throws IOException, InterruptedException {
+        String source = network.label(0);
+        String destination = network.label(1);
+        for (String query : new String[]{
+                "direction=up&source=" + source + "&destination=" + destination + "&departure=08:30",
+                "direction=right&source=NOWHERE&destination=" + destination + "&departure=08:30",
+                "direction=right&source=" + source + "&destination=" + destination + "&departure=25:99",
+                "direction=right&source=" + source + "&departure=08:30"}) {
+            HttpResponse<String> response = get(query);
+            assertEquals(400, response.statusCode(), query);
+            assertTrue(response.body().startsWith("{\"error\":"), response.body());
+        }
+        HttpResponse<String> batch = post("[{\"direction\":\"right\",\"source\":");
+        assertEquals(400, batch.statusCode(), batch.body());
+    }
+
+    @Test
+    void wrongMethodIsAnswered405() throws IOException, InterruptedException {
+        HttpResponse<String> route = client.send(HttpRequest.newBuilder(uri("/route?direction=right"))
+                .POST(HttpRequest.BodyPublishers.ofString("")).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(405, route.statusCode());
+        HttpResponse<String> batch = client.send(HttpRequest.newBuilder(uri("/route/batch")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(405, batch.statusCode());
+    }
+
+    @Test
+    void oversizedBatchIsAnswered413() throws IOException, InterruptedException {
+        RouteRequest request = randomRequest(new Random(SEED));
+        List<RouteRequest> requests = new ArrayList<>(RoutingServer.MAX_BATCH_SIZE + 1);
+        for (int i = 0; i <= RoutingServer.MAX_BATCH_SIZE; i++) {
+            requests.add(request);
+        }
+        HttpResponse<String> response = post(batchJson(requests));
+        assertEquals(413, response.statusCode(), response.body());
+    }
+
+    @Test
+    void batchIsAnsweredInRequestOrder() throws IOException, InterruptedException {
+        Random random = new Random(SEED);
+        List<RouteRequest> requests = new ArrayList<>();
+        StringBuilder expected = new StringBuilder("[");
+        for (int i = 0; i < 50; i++) {
+            RouteRequest request = randomRequest(random);
+            requests.add(request);
+            if (i > 0) {
+                expected.append(',');
+            }
+            expected.append(expectedJson(engine.query(request)));
+        }
+        HttpResponse<String> response = post(batchJson(requests));
+        assertEquals(200, response.statusCode(), response.body());
+        assertEquals(expected.append(']').toString(), response.body());
+    }
+
+    @Test
+    void concurrentIdenticalRequestsAreCoalesced() throws IOException, InterruptedException {
+        RouteRequest request = longestOf(new Random(SEED));
+        String expected = expectedJson(engine.query(request));
+        long coalesced_before = server.coalesced();
+        // whether a request arrives while the first one still searches is up to the scheduler, so try a few bursts
+        for (int attempt = 0; attempt < ATTEMPTS && server.coalesced() == coalesced_before; attempt++) {
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>(CONCURRENT_REQUESTS);
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                responses.add(client.sendAsync(HttpRequest.newBuilder(uri("/route?" + routeQuery(request))).GET().build(),
+                        HttpResponse.BodyHandlers.ofString()));
+            }
+            for (CompletableFuture<HttpResponse<String>> response : responses) {
+                assertEquals(200, response.join().statusCode());
+                assertEquals(expected, response.join().body());
+            }
+        }
+        assertTrue(server.coalesced() > coalesced_before, "no request was coalesced");
+    }
+
+    private RouteRequest randomRequest(Random random) {
+        TrainDirection direction = random.nextBoolean() ? TrainDirection.RIGHT : TrainDirection.LEFT;
+        return new RouteRequest(direction, random.nextInt(network.totalVertices()), random.nextInt(network.totalVertices()),
+                random.nextInt(TrainClock.MINUTES_PER_DAY));
+    }
+    /*
+    @return the request with the longest route of a few random ones, so its search lasts long enough to be joined
+     */
+    private RouteRequest longestOf(Random random) {
+        RouteRequest longest = randomRequest(random);
+        for (int i = 0; i < 50; i++) {
+            RouteRequest request = randomRequest(random);
+            if (engine.query(request).size() > engine.query(longest).size()) {
+                longest = request;
+            }
+        }
+        return longest;
+    }
+
+    private String routeQuery(RouteRequest request) {
+        return "direction=" + request.direction().name().toLowerCase() + "&source=" + network.label(request.sourceCheckpoint())
+                + "&destination=" + network.label(request.destinationCheckpoint())
+                + "&departure=" + TrainClock.format(request.departureMinute());
+    }
+
+    private String batchJson(List<RouteRequest> requests) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < requests.size(); i++) {
+            RouteRequest request = requests.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"direction\":\"").append(request.direction().name().toLowerCase())
+                    .append("\",\"source\":\"").append(network.label(request.sourceCheckpoint()))
+                    .append("\",\"destination\":\"").append(network.label(request.destinationCheckpoint()))
+                    .append("\",\"departure\":\"").append(TrainClock.format(request.departureMinute())).append("\"}");
+        }
+        return json.append(']').toString();
+    }
+
+    private String expectedJson(RouteResult result) {
+        RouteRequest request = result.request();
+        StringBuilder json = new StringBuilder("{\"direction\":\"").append(request.direction().name().toLowerCase())
+                .append("\",\"source\":\"").append(network.label(request.sourceCheckpoint()))
+                .append("\",\"destination\":\"").append(network.label(request.destinationCheckpoint()))
+                .append("\",\"departure\":\"").append(TrainClock.format(request.departureMinute()))
+                .append("\",\"found\":").append(result.isFound());
+        if (result.isFound()) {
+            json.append(",\"weight\":").append(result.totalWeight());
+        }
+        json.append(",\"path\":[");
+        for (int i = 0; i < result.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"checkpoint\":\"").append(network.label(result.checkpoint(i)))
+                    .append("\",\"arrival\":\"").append(TrainClock.format(result.arrivalMinute(i)))
+                    .append("\",\"minute\":").append(result.arrivalMinute(i)).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private HttpResponse<String> get(String query) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(uri("/route?" + query)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String body) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(uri("/route/batch")).POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path_and_query) {
+        return URI.create("http://localhost:" + server.address().getPort() + path_and_query);
+    }
+}
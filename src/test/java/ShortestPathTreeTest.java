@@ -0,0 +1,106 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ShortestPathTree.repair against ShortestPathTree.compute after random edge changes on a synthetic network
+tree edges and other edges are disabled, enabled again and made cheaper or dearer; the repaired trees must have the
+weights and distances of recomputed ones, and every parent must be a tail of an enabled edge that realises them
+ */
+class ShortestPathTreeTest {
+    private static final long SEED = 20_240_610L;
+    private static final int ROOTS = 6;
+    private static final int CHANGES = 300;
+
+    @Test
+    void repairedTreesEqualRecomputedTrees() {
+        Random random = new Random(SEED);
+        RailwayNetwork network = SyntheticRailwayNetwork.generate(3000, SEED);
+        TrainDirection direction = TrainDirection.RIGHT;
+        List<ShortestPathTree> trees = new ArrayList<>(ROOTS);
+        for (int i = 0; i < ROOTS; i++) {
+            trees.add(ShortestPathTree.compute(network.graph(direction), random.nextInt(network.totalVertices())));
+        }
+        List<int[]> disabled = new ArrayList<>();
+        int tree_edge_changes = 0;
+        for (int change = 0; change < CHANGES; change++) {
+            CompactGraph graph = network.graph(direction);
+            int[] edge = random.nextBoolean() ? treeEdge(trees.get(random.nextInt(ROOTS)), graph, random) : null;
+            if (edge == null) {
+                edge = anyEdge(graph, random);
+            } else {
+                tree_edge_changes++;
+            }
+            int index = network.edge(direction, edge[0], edge[1]);
+            RailwayNetwork updated;
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    updated = network.withEdgeEnabled(direction, edge[0], edge[1], false);
+                    disabled.add(edge);
+                }
+                case 1 -> {
+                    if (disabled.isEmpty()) {
+                        continue;
+                    }
+                    edge = disabled.remove(random.nextInt(disabled.size()));
+                    index = network.edge(direction, edge[0], edge[1]);
+                    updated = network.withEdgeEnabled(direction, edge[0], edge[1], true);
+                }
+                case 2 -> updated = network.withEdgeCost(direction, edge[0], edge[1], graph.weight(index) / 2, graph.distance(index) / 2);
+                default -> updated = network.withEdgeCost(direction, edge[0], edge[1], graph.weight(index) * 3 + 1, graph.distance(index) + 7);
+            }
+            for (int i = 0; i < ROOTS; i++) {
+                ShortestPathTree repaired = trees.get(i).repair(graph, updated.graph(direction), edge[0], index);
+                assertSameTree(ShortestPathTree.compute(updated.graph(direction), repaired.sourceCheckpoint()), repaired,
+                        updated.graph(direction), "change " + change);
+                trees.set(i, repaired);
+            }
+            network = updated;
+        }
+        assertTrue(tree_edge_changes > CHANGES / 4, "too few tree edges were changed");
+    }
+    /*
+    @return tail and head of the edge into a random reached vertex of tree, null if only the root is reached
+     */
+    private static int[] treeEdge(ShortestPathTree tree, CompactGraph graph, Random random) {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            int vertex = random.nextInt(graph.totalVertices());
+            if (tree.isReached(vertex) && tree.parent(vertex) != DijkstraSearch.NO_PARENT) {
+                return new int[]{tree.parent(vertex), vertex};
+            }
+        }
+        return null;
+    }
+
+    private static int[] anyEdge(CompactGraph graph, Random random) {
+        int edge = random.nextInt(graph.totalEdges());
+        int tail = 0;
+        while (graph.endEdge(tail) <= edge) {
+            tail++;
+        }
+        return new int[]{tail, graph.destination(edge)};
+    }
+
+    private static void assertSameTree(ShortestPathTree expected, ShortestPathTree actual, CompactGraph graph, String message) {
+        for (int vertex = 0; vertex < graph.totalVertices(); vertex++) {
+            assertEquals(expected.weight(vertex), actual.weight(vertex), message + ", weight of " + vertex);
+            assertEquals(expected.distance(vertex), actual.distance(vertex), message + ", distance of " + vertex);
+            int parent = actual.parent(vertex);
+            if (!actual.isReached(vertex) || parent == DijkstraSearch.NO_PARENT) {
+                continue;
+            }
+            boolean realised = false;
+            for (int edge = graph.firstEdge(parent); edge < graph.endEdge(parent) && !realised; edge++) {
+                realised = graph.destination(edge) == vertex && graph.isEnabled(edge)
+                        && actual.weight(parent) + graph.weight(edge) == actual.weight(vertex)
+                        && actual.distance(parent) + graph.distance(edge) == actual.distance(vertex);
+            }
+            assertTrue(realised, message + ", parent of " + vertex);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/*
+TrainScheduler on a hand-made junction and on a batch of trains over a synthetic network
+the junction has a track TC1 shared by the lines TCS -> TC1 -> TCD and TCX -> TC1 -> TCY and a detour
+TCS -> M1 -> M2 -> TCD over two switches; entering a track takes 2 minutes and entering a switch 5, so the direct
+line reaches TCD 4 minutes after TCS and the detour 12 minutes after it
+ */
+class TrainSchedulerTest {
+    private static final long SEED = 20_240_612L;
+    private static final String[][] JUNCTION = {
+            {"TCS", "TC1"}, {"TC1", "TCD"}, {"TCX", "TC1"}, {"TC1", "TCY"}, {"TCS", "M1"}, {"M1", "M2"}, {"M2", "TCD"}
+    };
+
+    @Test
+    void trainWaitsForAnOccupiedTrack() {
+        RailwayNetwork network = junction();
+        TrainScheduler scheduler = new TrainScheduler(network);
+        RouteResult crossing = scheduler.schedule(request(network, "TCX", "TCY", 0));
+        assertEquals(2, crossing.arrivalMinute(1));
+        // TC1 is occupied until one minute after the crossing train reached TCY, waiting costs 3 minutes, the detour 8
+        RouteResult train = scheduler.schedule(request(network, "TCS", "TCD", 0));
+        assertArrayEquals(checkpoints(network, "TCS", "TC1", "TCD"), train.checkpoints());
+        assertEquals(5, train.arrivalMinute(1));
+        assertEquals(7, train.arrivalMinute(2));
+    }
+
+    @Test
+    void trainReroutesWhenWaitingTakesLonger() {
+        RailwayNetwork network = junction();
+        TrainScheduler scheduler = new TrainScheduler(network, 20);
+        scheduler.schedule(request(network, "TCX", "TCY", 0));
+        // TC1 is now occupied until minute 24, the detour arrives at minute 12
+        RouteResult train = scheduler.schedule(request(network, "TCS", "TCD", 0));
+        assertArrayEquals(checkpoints(network, "TCS", "M1", "M2", "TCD"), train.checkpoints());
+        assertArrayEquals(new int[]{0, 5, 10, 12}, train.arrivalMinutes());
+    }
+
+    @Test
+    void trainWaitsPastMidnight() {
+        RailwayNetwork network = junction();
+        TrainScheduler scheduler = new TrainScheduler(network);
+        int departure = TrainClock.MINUTES_PER_DAY - 4;
+        scheduler.schedule(request(network, "TCX", "TCY", departure));
+        RouteResult train = scheduler.schedule(request(network, "TCS", "TCD", departure));
+        assertArrayEquals(checkpoints(network, "TCS", "TC1", "TCD"), train.checkpoints());
+        assertEquals(departure + 7, train.arrivalMinute(2));
+        assertEquals("00:03", TrainClock.format(train.arrivalMinute(2)));
+    }
+
+    @Test
+    void unreachableDestinationReservesNothing() {
+        RailwayNetwork network = junction();
+        TrainScheduler scheduler = new TrainScheduler(network);
+        assertFalse(scheduler.schedule(request(network, "TCD", "TCS", 0)).isFound());
+        assertEquals(0, scheduler.occupancy().totalIntervals());
+    }
+
+    @Test
+    void trainsOfABatchNeverShareACheckpoint() {
+        RailwayNetwork network = SyntheticRailwayNetwork.generate(2000, SEED);
+        Random random = new Random(SEED);
+        List<RouteRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            // few sources and close departures, so many trains compete for the same checkpoints
+            int departure = i % 3 == 0 ? TrainClock.MINUTES_PER_DAY - 10 + random.nextInt(20) : random.nextInt(30);
+            requests.add(new RouteRequest(random.nextBoolean() ? TrainDirection.RIGHT : TrainDirection.LEFT,
+                    random.nextInt(12), random.nextInt(network.totalVertices()), departure));
+        }
+        for (int clearance_minutes : new int[]{1, 3}) {
+            TrainScheduler scheduler = new TrainScheduler(network, clearance_minutes);
+            TrainScheduler unobstructed = new TrainScheduler(network, clearance_minutes);
+            List<RouteResult> routes = scheduler.scheduleAll(requests);
+            List<List<int[]>> occupations = new ArrayList<>(network.totalVertices());
+            for (int v = 0; v < network.totalVertices(); v++) {
+                occupations.add(new ArrayList<>());
+            }
+            int delayed = 0;
+            for (int train = 0; train < routes.size(); train++) {
+                RouteResult route = routes.get(train);
+                RouteResult alone = unobstructed.route(requests.get(train));
+                assertEquals(alone.isFound(), route.isFound(), "train " + train);
+                if (!route.isFound()) {
+                    continue;
+                }
+                int arrival = route.arrivalMinute(route.size() - 1);
+                assertTrue(arrival >= alone.arrivalMinute(alone.size() - 1), "train " + train);
+                if (arrival > alone.arrivalMinute(alone.size() - 1)) {
+                    delayed++;
+                }
+                assertTrue(route.arrivalMinute(0) >= requests.get(train).departureMinute(), "train " + train);
+                for (int i = 0; i < route.size(); i++) {
+                    int release = (i + 1 < route.size() ? route.arrivalMinute(i + 1) : route.arrivalMinute(i)) + clearance_minutes;
+                    assertTrue(route.arrivalMinute(i) < release, "train " + train);
+                    occupations.get(route.checkpoint(i)).add(new int[]{train, route.arrivalMinute(i), release});
+                }
+            }
+            assertTrue(delayed > 0, "no train had to give way");
+            for (int v = 0; v < network.totalVertices(); v++) {
+                List<int[]> at_checkpoint = occupations.get(v);
+                for (int a = 0; a < at_checkpoint.size(); a++) {
+                    for (int b = a + 1; b < at_checkpoint.size(); b++) {
+                        int[] first = at_checkpoint.get(a);
+                        int[] second = at_checkpoint.get(b);
+                        assertTrue(first[0] == second[0] || first[2] <= second[1] || second[2] <= first[1],
+                                "trains " + first[0] + " and " + second[0] + " overlap at checkpoint " + network.label(v)
+                                        + " with clearance " + clearance_minutes);
+                    }
+                }
+            }
+        }
+    }
+
+    private static RailwayNetwork junction() {
+        RouteGraphLoader loader = new RouteGraphLoader();
+        for (String[] route : JUNCTION) {
+            loader.addRoute(route[0], route[1]);
+        }
+        return loader.build();
+    }
+
+    private static RouteRequest request(RailwayNetwork network, String source, String destination, int departure_minute) {
+        return new RouteRequest(TrainDirection.RIGHT, network.checkpointId(source), network.checkpointId(destination), departure_minute);
+    }
+
+    private static int[] checkpoints(RailwayNetwork network, String... labels) {
+        int[] checkpoints = new int[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            checkpoints[i] = network.checkpointId(labels[i]);
+        }
+        return checkpoints;
+    }
+}